@@ -0,0 +1,89 @@
+package org.hytalewiki;
+
+import com.hypixel.hytale.server.core.Message;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.json.ResponseCodec;
+import org.hytalewiki.net.response.SearchEntry;
+import org.hytalewiki.net.response.SearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// What a search command does with a result once it has one.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WikiMessagesBenchmark {
+
+    private WikiMessages messages;
+
+    // Keeps nothing, renders every time like before rendered messages were cached.
+    private WikiMessages uncached;
+    private SearchResult result;
+    private SearchEntry entry;
+    private String lastTitle;
+
+    @Setup
+    public void setup() throws IOException {
+        WikiClient client = new WikiClient(HytaleWikiPlugin.HYTALE_WIKI_ORG_BASE_URL);
+        this.messages = new WikiMessages(client);
+        this.uncached = new WikiMessages(client, 0);
+
+        try (InputStream stream = WikiMessagesBenchmark.class.getResourceAsStream("/fixtures/search_iron.json")) {
+            if (stream == null) {
+                throw new IOException("Missing fixture search_iron.json");
+            }
+            this.result = ResponseCodec.COMPACT.decode(new InputStreamReader(stream, StandardCharsets.UTF_8), SearchResult.class);
+        }
+
+        this.entry = result.getPages().getFirst();
+        // Worst case for a hit, every entry is compared before it.
+        this.lastTitle = result.getPages().getLast().getTitle().toUpperCase();
+    }
+
+    @Benchmark
+    public SearchEntry findExactMatchHit() {
+        return WikiCommand.findExactMatch(result, lastTitle);
+    }
+
+    @Benchmark
+    public SearchEntry findExactMatchMiss() {
+        return WikiCommand.findExactMatch(result, "Iron Sword of the Ancients");
+    }
+
+    @Benchmark
+    public Message makeResultRow() {
+        return messages.makeResultRow(entry);
+    }
+
+    @Benchmark
+    public Message makeResultList() {
+        return messages.makeResultList(result.getPages());
+    }
+
+    @Benchmark
+    public Message makeResultRowUncached() {
+        return uncached.makeResultRow(entry);
+    }
+
+    @Benchmark
+    public Message makeResultListUncached() {
+        return uncached.makeResultList(result.getPages());
+    }
+}
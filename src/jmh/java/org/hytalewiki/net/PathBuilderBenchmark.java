@@ -0,0 +1,90 @@
+package org.hytalewiki.net;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.concurrent.TimeUnit;
+
+// Building the search URL and cache key happens on every command, cached or not.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBuilderBenchmark {
+
+    private static final String BASE_URL = "https://hytalewiki.org";
+
+    @Param({"Iron", "Iron Sword of the Ancients", "Épée en fer"})
+    private String term;
+
+    private WikiClient.PathBuilder path;
+
+    private WikiClient client;
+
+    private RequestTemplate template;
+
+    @Setup
+    public void setup() {
+        this.path = searchPath();
+        this.client = new WikiClient(BASE_URL);
+        this.template = RequestTemplate.ofQuery(BASE_URL + "/rest.php/v1/search/page", new String[]{"q", "limit"});
+    }
+
+    private WikiClient.PathBuilder searchPath() {
+        return WikiClient.PathBuilder.create(BASE_URL)
+                .appendPath("/rest.php/v1")
+                .appendPath("/search/page")
+                .param("q", term)
+                .param("limit", "10");
+    }
+
+    @Benchmark
+    public WikiClient.PathBuilder param() {
+        return searchPath();
+    }
+
+    @Benchmark
+    public String buildQuery() {
+        return path.buildQuery();
+    }
+
+    @Benchmark
+    public URI toURI() {
+        return path.toURI();
+    }
+
+    @Benchmark
+    public String toKey() {
+        return path.toKey();
+    }
+
+    // What a search command used to pay before the cache lookup.
+    @Benchmark
+    public String paramToKey() {
+        return searchPath().toKey();
+    }
+
+    // The same with a template, for a term that was looked up recently.
+    @Benchmark
+    public String templateKey() {
+        return template.expand(term, "10").key();
+    }
+
+    @Benchmark
+    public HttpRequest searchRequest() {
+        return client.buildSearchRequest(term, 10);
+    }
+}
@@ -0,0 +1,110 @@
+package org.hytalewiki.net;
+
+import org.hytalewiki.net.json.ResponseCodec;
+import org.hytalewiki.net.response.PageObject;
+import org.hytalewiki.net.response.SearchEntry;
+import org.hytalewiki.net.response.SearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Decodes recorded responses the way sendJsonRequest does once the body is in: inflate if needed,
+// then stream into the codec. Scale sets the number of search results and how many times the page
+// source is repeated, so the cost per payload size shows up next to the allocation rate.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadDecodingBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int scale;
+
+    @Param({"identity", "gzip"})
+    private String encoding;
+
+    private HttpHeaders headers;
+    private byte[] page;
+    private byte[] search;
+
+    @Setup
+    public void setup() throws IOException {
+        PageObject recordedPage = ResponseCodec.FULL.decode(fixture("page_iron.json"), PageObject.class);
+        recordedPage.setSource(recordedPage.getSource().repeat(scale));
+
+        List<SearchEntry> recorded = ResponseCodec.FULL.decode(fixture("search_iron.json"), SearchResult.class).getPages();
+        List<SearchEntry> entries = new ArrayList<>();
+        for (int i = 0; i < scale; i++) {
+            entries.add(recorded.get(i % recorded.size()));
+        }
+
+        this.headers = HttpHeaders.of(encoding.equals("gzip") ? Map.of("Content-Encoding", List.of("gzip")) : Map.of(),
+                (name, value) -> true);
+        this.page = encode(ResponseCodec.FULL.encode(recordedPage, PageObject.class));
+        this.search = encode(ResponseCodec.FULL.encode(new SearchResult(entries), SearchResult.class));
+    }
+
+    private static Reader fixture(String name) throws IOException {
+        InputStream stream = PayloadDecodingBenchmark.class.getResourceAsStream("/fixtures/" + name);
+        if (stream == null) {
+            throw new IOException("Missing fixture " + name);
+        }
+        return new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        if (!encoding.equals("gzip")) {
+            return bytes;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private Reader reader(byte[] body) {
+        return new InputStreamReader(ContentEncoding.decode(headers, new ByteArrayInputStream(body)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public PageObject pageCompact() {
+        return ResponseCodec.COMPACT.decode(reader(page), PageObject.class);
+    }
+
+    @Benchmark
+    public PageObject pageFull() {
+        return ResponseCodec.FULL.decode(reader(page), PageObject.class);
+    }
+
+    @Benchmark
+    public SearchResult searchCompact() {
+        return ResponseCodec.COMPACT.decode(reader(search), SearchResult.class);
+    }
+}
@@ -0,0 +1,91 @@
+package org.hytalewiki.net.json;
+
+import com.google.gson.GsonBuilder;
+import org.hytalewiki.net.response.PageObject;
+import org.hytalewiki.net.response.SearchResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Compares the reflective Gson path WikiClient used to take on every request with the streaming codecs.
+// Run with the GC profiler (the jmh task does) and compare gc.alloc.rate.norm.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseDecodingBenchmark {
+
+    private byte[] page;
+    private byte[] search;
+
+    @Setup
+    public void setup() throws IOException {
+        this.page = fixture("page_iron.json");
+        this.search = fixture("search_iron.json");
+    }
+
+    static byte[] fixture(String name) throws IOException {
+        try (InputStream stream = ResponseDecodingBenchmark.class.getResourceAsStream("/fixtures/" + name)) {
+            if (stream == null) {
+                throw new IOException("Missing fixture " + name);
+            }
+            return stream.readAllBytes();
+        }
+    }
+
+    private static Reader reader(byte[] body) {
+        return new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public PageObject pageReflective() {
+        return new GsonBuilder().create().fromJson(reader(page), PageObject.class);
+    }
+
+    @Benchmark
+    public PageObject pageFull() {
+        return ResponseCodec.FULL.decode(reader(page), PageObject.class);
+    }
+
+    @Benchmark
+    public PageObject pageCompact() {
+        return ResponseCodec.COMPACT.decode(reader(page), PageObject.class);
+    }
+
+    @Benchmark
+    public SearchResult searchReflective() {
+        return new GsonBuilder().create().fromJson(reader(search), SearchResult.class);
+    }
+
+    @Benchmark
+    public SearchResult searchFull() {
+        return ResponseCodec.FULL.decode(reader(search), SearchResult.class);
+    }
+
+    @Benchmark
+    public SearchResult searchCompact() {
+        return ResponseCodec.COMPACT.decode(reader(search), SearchResult.class);
+    }
+
+    @Benchmark
+    public SearchResult searchKeys() {
+        return ResponseCodec.KEYS.decode(reader(search), SearchResult.class);
+    }
+}
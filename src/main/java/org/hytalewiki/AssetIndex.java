@@ -0,0 +1,157 @@
+package org.hytalewiki;
+
+import com.hypixel.hytale.assetstore.event.LoadedAssetsEvent;
+import com.hypixel.hytale.assetstore.event.RemovedAssetsEvent;
+import com.hypixel.hytale.assetstore.map.DefaultAssetMap;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.asset.type.item.config.Item;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+// Maps in-game asset IDs to the wiki pages named after their display names.
+// HytaleWiki uses display names instead of in-game IDs for page keys, resolving them
+// up front turns every lookup into a single hash lookup without translation work.
+// todo: index block and NPC IDs as well
+public class AssetIndex {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    // Replaced as a whole on every change, readers never lock.
+    private volatile Map<String, Entry> entries = Map.of();
+
+    private volatile boolean built = false;
+
+    // Asset changes until the index is built, replayed onto it. The build reads the asset map while they come
+    // in, so it may or may not have them already. Guarded by this.
+    private final Map<String, Entry> loadedWhileBuilding = new HashMap<>();
+    private final Set<String> removedWhileBuilding = new HashSet<>();
+
+    public static class Entry {
+        private final String id;
+        private final String title;
+        private final String key;
+
+        Entry(String id, String title) {
+            this.id = id;
+            this.title = title;
+            this.key = title.replace(" ", "_");
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        // Display name, which is also the title of the wiki page.
+        public String getTitle() {
+            return title;
+        }
+
+        // Normalized page key.
+        public String getKey() {
+            return key;
+        }
+    }
+
+    // Resolve an in-game ID, or null if it isn't one.
+    public Entry resolve(String id) {
+        Entry entry = entries.get(id);
+        if (entry != null || built) {
+            return entry;
+        }
+
+        // Not built yet, resolve directly.
+        Item item = Item.getAssetStore().getAssetMap().getAsset(id);
+        return item == null ? null : create(item);
+    }
+
+    public Entry resolve(Item item) {
+        Entry entry = entries.get(item.getId());
+        return entry != null ? entry : create(item);
+    }
+
+    // Build the whole index off the calling thread, translating display names in parallel.
+    public CompletableFuture<Void> build() {
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+
+            Map<String, Entry> built = index(Item.getAssetStore().getAssetMap().getAssetMap().values());
+
+            synchronized (this) {
+                built.putAll(loadedWhileBuilding);
+                built.keySet().removeAll(removedWhileBuilding);
+                loadedWhileBuilding.clear();
+                removedWhileBuilding.clear();
+
+                this.entries = Map.copyOf(built);
+                this.built = true;
+            }
+
+            LOGGER.atInfo().log("Indexed " + built.size() + " items in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        });
+    }
+
+    public void onItemsLoaded(LoadedAssetsEvent<String, Item, DefaultAssetMap<String, Item>> event) {
+        Map<String, Entry> loaded = index(event.getLoadedAssets().values());
+
+        synchronized (this) {
+            Map<String, Entry> updated = new HashMap<>(this.entries);
+            updated.putAll(loaded);
+            this.entries = Map.copyOf(updated);
+
+            if (!built) {
+                loadedWhileBuilding.putAll(loaded);
+                removedWhileBuilding.removeAll(loaded.keySet());
+            }
+        }
+    }
+
+    public void onItemsRemoved(RemovedAssetsEvent<String, Item, DefaultAssetMap<String, Item>> event) {
+        Set<String> removed = event.getRemovedAssets();
+
+        synchronized (this) {
+            Map<String, Entry> updated = new HashMap<>(this.entries);
+            updated.keySet().removeAll(removed);
+            this.entries = Map.copyOf(updated);
+
+            if (!built) {
+                removedWhileBuilding.addAll(removed);
+                loadedWhileBuilding.keySet().removeAll(removed);
+            }
+        }
+    }
+
+    private static Map<String, Entry> index(Collection<Item> items) {
+        return items.parallelStream()
+                .filter(item -> item.getId() != null && item.getTranslationKey() != null)
+                .map(AssetIndex::create)
+                .collect(Collectors.toMap(Entry::getId, entry -> entry, (first, second) -> first));
+    }
+
+    private static Entry create(Item item) {
+        return new Entry(item.getId(), getDisplayName(item));
+    }
+
+    public static String getDisplayName(Item item) {
+        String translationKey = item.getTranslationKey();
+        return Message.translation(translationKey).getAnsiMessage();
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+}
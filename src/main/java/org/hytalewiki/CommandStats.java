@@ -0,0 +1,52 @@
+package org.hytalewiki;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// How often each wiki subcommand runs and how it ends, keyed by subcommand name.
+public class CommandStats {
+
+    // Sorted so the stats output is stable.
+    private final Map<String, Counters> commands = new ConcurrentSkipListMap<>();
+
+    private static class Counters {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder throttled = new LongAdder();
+        private final LongAdder notFound = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+    }
+
+    private Counters counters(String command) {
+        return commands.computeIfAbsent(command, ignored -> new Counters());
+    }
+
+    public void onInvoked(String command) {
+        counters(command).invocations.increment();
+    }
+
+    public void onThrottled(String command) {
+        counters(command).throttled.increment();
+    }
+
+    // The page the command looked for doesn't exist on the wiki.
+    public void onNotFound(String command) {
+        counters(command).notFound.increment();
+    }
+
+    public void onFailure(String command) {
+        counters(command).failures.increment();
+    }
+
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        commands.forEach((command, counters) -> snapshots.add(new Snapshot(command,
+                counters.invocations.sum(), counters.throttled.sum(), counters.notFound.sum(), counters.failures.sum())));
+        return snapshots;
+    }
+
+    public record Snapshot(String command, long invocations, long throttled, long notFound, long failures) {
+    }
+}
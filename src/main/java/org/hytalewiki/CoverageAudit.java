@@ -0,0 +1,286 @@
+package org.hytalewiki;
+
+import com.google.gson.stream.JsonWriter;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.response.PageObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Checks which items have a page on the wiki, for the content team. Each title items resolve to is looked
+// up once, in batches of up to 50 titles per action API query. A few batches are in flight at once, each only
+// sent with a global token the throttle can spare, so commands keep their budget while an audit runs.
+// Nothing of it runs on the server threads.
+public class CoverageAudit {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final WikiClient client;
+
+    // Null if throttling is disabled.
+    private final RequestThrottle throttle;
+
+    private final int batchSize;
+
+    private final int maxConcurrent;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // In the order reports list them.
+    public enum Status {
+        MISSING, REDIRECTED, FAILED, PRESENT
+    }
+
+    // An item and the title of the page it should have.
+    public record Asset(String id, String title) {
+    }
+
+    // target is the title the page redirects to, null unless REDIRECTED.
+    public record Row(String id, String title, Status status, String target) {
+    }
+
+    // Titles checked so far, of total, and how many of them have no page.
+    public record Progress(int checked, int total, int missing) {
+    }
+
+    public CoverageAudit(WikiClient client, RequestThrottle throttle, int batchSize, int maxConcurrent) {
+        this.client = client;
+        this.throttle = throttle;
+        this.batchSize = Math.clamp(batchSize, 1, 50);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    // Check every asset, reporting progress about every tenth of the titles. Titles that couldn't be checked,
+    // because the wiki kept failing, are FAILED. Fails with an IllegalStateException if an audit is running.
+    public CompletableFuture<Report> run(Collection<Asset> assets, Consumer<Progress> progress) {
+        if (!running.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("An audit is already running"));
+        }
+
+        Run run = new Run(assets, progress);
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(maxConcurrent, Math.max(1, run.batches.size()))];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = lane(run);
+        }
+        return CompletableFuture.allOf(lanes)
+                .thenApply(ignored -> run.report())
+                .whenComplete((report, throwable) -> running.set(false));
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private class Run {
+        private final long start = System.nanoTime();
+
+        private final Collection<Asset> assets;
+        private final Consumer<Progress> progress;
+
+        private final List<List<String>> batches = new ArrayList<>();
+        private final int total;
+
+        // By title as asked for.
+        private final Map<String, Result> results = new ConcurrentHashMap<>();
+
+        private final AtomicInteger nextBatch = new AtomicInteger();
+        private final AtomicInteger checked = new AtomicInteger();
+        private final AtomicInteger missing = new AtomicInteger();
+        private final AtomicInteger reportedTenths = new AtomicInteger();
+
+        Run(Collection<Asset> assets, Consumer<Progress> progress) {
+            this.assets = List.copyOf(assets);
+            this.progress = progress;
+
+            List<String> titles = this.assets.stream()
+                    .map(Asset::title)
+                    .filter(title -> title != null && !title.isBlank())
+                    .distinct()
+                    .sorted()
+                    .toList();
+            this.total = titles.size();
+
+            List<String> batch = new ArrayList<>(batchSize);
+            for (String title : titles) {
+                // The wiki doesn't allow | in titles, and the action API would read it as two of them.
+                if (title.indexOf('|') >= 0) {
+                    results.put(title, new Result(Status.MISSING, null));
+                    checked.incrementAndGet();
+                    missing.incrementAndGet();
+                    continue;
+                }
+                batch.add(title);
+                if (batch.size() == batchSize) {
+                    batches.add(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+        }
+
+        void record(List<String> batch, Map<String, PageObject> pages) {
+            int missingInBatch = 0;
+            for (String title : batch) {
+                PageObject page = pages != null ? pages.get(title) : null;
+                Result result;
+                if (pages == null) {
+                    result = new Result(Status.FAILED, null);
+                } else if (page == null || page.getKey() == null) {
+                    result = new Result(Status.MISSING, null);
+                    missingInBatch++;
+                } else if (!page.getTitle().equals(canonicalTitle(title))) {
+                    result = new Result(Status.REDIRECTED, page.getTitle());
+                } else {
+                    result = new Result(Status.PRESENT, null);
+                }
+                results.put(title, result);
+            }
+
+            int missingNow = missing.addAndGet(missingInBatch);
+            int checkedNow = checked.addAndGet(batch.size());
+            int tenths = total == 0 ? 10 : (int) (checkedNow * 10L / total);
+            int reported = reportedTenths.get();
+            if (tenths > reported && reportedTenths.compareAndSet(reported, tenths)) {
+                progress.accept(new Progress(checkedNow, total, missingNow));
+            }
+        }
+
+        // One row per asset, by status and then item ID. Assets without a title have no page.
+        Report report() {
+            List<Row> rows = new ArrayList<>(assets.size());
+            for (Asset asset : assets) {
+                Result result = asset.title() != null ? results.get(asset.title()) : null;
+                rows.add(result != null
+                        ? new Row(asset.id(), asset.title(), result.status(), result.target())
+                        : new Row(asset.id(), asset.title(), Status.MISSING, null));
+            }
+            rows.sort(Comparator.comparing(Row::status).thenComparing(Row::id, Comparator.nullsFirst(Comparator.naturalOrder())));
+            return new Report(Instant.now(), Duration.ofNanos(System.nanoTime() - start), total, rows);
+        }
+    }
+
+    private record Result(Status status, String target) {
+    }
+
+    // Takes batches until there are none left. A batch that fails is recorded as such and the lane goes on.
+    private CompletableFuture<Void> lane(Run run) {
+        int index = run.nextBatch.getAndIncrement();
+        if (index >= run.batches.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<String> batch = run.batches.get(index);
+        return (throttle != null ? throttle.acquireSpare() : CompletableFuture.<Void>completedFuture(null))
+                .thenCompose(ignored -> client.queryPages(batch))
+                .handle((pages, throwable) -> {
+                    run.record(batch, throwable == null ? pages : null);
+                    return null;
+                })
+                .thenCompose(ignored -> lane(run));
+    }
+
+    // The title as MediaWiki stores it, with spaces for underscores and the first letter upper case, so
+    // only real redirects differ from the title of the page they end up at.
+    static String canonicalTitle(String title) {
+        String spaced = title.replace('_', ' ').strip();
+        if (spaced.isEmpty()) {
+            return spaced;
+        }
+        int first = spaced.codePointAt(0);
+        return new StringBuilder(spaced.length())
+                .appendCodePoint(Character.toUpperCase(first))
+                .append(spaced, Character.charCount(first), spaced.length())
+                .toString();
+    }
+
+    // titles is the number of distinct titles checked, rows has one row per asset.
+    public record Report(Instant finishedAt, Duration duration, int titles, List<Row> rows) {
+
+        public int count(Status status) {
+            int count = 0;
+            for (Row row : rows) {
+                if (row.status() == status) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        // Write the report as coverage-<timestamp>.csv and .json in the directory, returns both files.
+        public List<Path> write(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            String name = "coverage-" + FILE_TIMESTAMP.format(finishedAt);
+            Path csv = directory.resolve(name + ".csv");
+            Path json = directory.resolve(name + ".json");
+            writeCsv(csv);
+            writeJson(json);
+            return List.of(csv, json);
+        }
+
+        public void writeCsv(Path file) throws IOException {
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("id,title,status,target\n");
+                for (Row row : rows) {
+                    writer.write(csvField(row.id()) + "," + csvField(row.title()) + ","
+                            + row.status().name().toLowerCase(Locale.ROOT) + "," + csvField(row.target()) + "\n");
+                }
+            }
+        }
+
+        public void writeJson(Path file) throws IOException {
+            try (JsonWriter out = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                out.setIndent("  ");
+                out.beginObject();
+                out.name("finishedAt").value(finishedAt.toString());
+                out.name("durationMillis").value(duration.toMillis());
+                out.name("titles").value(titles);
+                for (Status status : Status.values()) {
+                    out.name(status.name().toLowerCase(Locale.ROOT)).value(count(status));
+                }
+                out.name("items").beginArray();
+                for (Row row : rows) {
+                    out.beginObject()
+                            .name("id").value(row.id())
+                            .name("title").value(row.title())
+                            .name("status").value(row.status().name().toLowerCase(Locale.ROOT));
+                    if (row.target() != null) {
+                        out.name("target").value(row.target());
+                    }
+                    out.endObject();
+                }
+                out.endArray();
+                out.endObject();
+            }
+        }
+
+        private static String csvField(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+}
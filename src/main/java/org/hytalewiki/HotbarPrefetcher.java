@@ -0,0 +1,167 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.CircuitBreaker;
+import org.hytalewiki.net.WikiClient;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+// Looks up the pages for items on players' hotbars before anyone asks, so /wiki hand is answered
+// from cache. Best effort: a title is only fetched once however many players hold the item, few
+// prefetches run at a time, and when the wiki is slow or failing, prefetches are the first thing dropped.
+public class HotbarPrefetcher {
+
+    private final WikiClient client;
+
+    // Null if throttling is disabled.
+    private final RequestThrottle throttle;
+
+    // Where prefetches are started from, kept off the server threads.
+    private final Executor executor;
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+
+    private final long slowNanos;
+    private final long pauseNanos;
+
+    private final LongSupplier clock;
+
+    // Titles that are queued or in flight.
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    // Most recently held first.
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    private int inFlight;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Set after a slow or failed prefetch, nothing is prefetched until then.
+    private volatile long pausedUntil;
+
+    private final LongAdder prefetched = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public HotbarPrefetcher(WikiClient client, RequestThrottle throttle, Executor executor,
+                            int maxConcurrent, int maxQueued, Duration slow, Duration pause) {
+        this(client, throttle, executor, maxConcurrent, maxQueued, slow, pause, System::nanoTime);
+    }
+
+    HotbarPrefetcher(WikiClient client, RequestThrottle throttle, Executor executor,
+                     int maxConcurrent, int maxQueued, Duration slow, Duration pause, LongSupplier clock) {
+        this.client = client;
+        this.throttle = throttle;
+        this.executor = executor;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(1, maxQueued);
+        this.slowNanos = slow.toNanos();
+        this.pauseNanos = pause.toNanos();
+        this.clock = clock;
+        this.pausedUntil = clock.getAsLong();
+    }
+
+    // Called for an item on a player's hotbar, with the page title it resolves to. The latest offer goes first.
+    // Called on the world thread, so only queues the title. Whether its page is cached is checked once it's
+    // taken off the queue, as the cache may have to read its store for that.
+    public void offer(String title) {
+        if (isShedding()) {
+            shed.increment();
+            return;
+        }
+        if (!pending.add(title)) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            queue.addFirst(title);
+            if (queue.size() > maxQueued) {
+                pending.remove(queue.removeLast());
+                shed.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        executor.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            String title;
+            lock.lock();
+            try {
+                if (inFlight >= maxConcurrent || queue.isEmpty()) {
+                    return;
+                }
+                title = queue.removeFirst();
+                inFlight++;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean cached = client.isPageCached(title);
+            if (!cached && !isShedding() && (throttle == null || throttle.tryAcquireSpare())) {
+                prefetch(title);
+                continue;
+            }
+            if (!cached) {
+                shed.increment();
+            }
+            release(title);
+        }
+    }
+
+    private void prefetch(String title) {
+        long start = clock.getAsLong();
+        client.pageAsync(title).whenComplete((page, throwable) -> {
+            long end = clock.getAsLong();
+            if (throwable != null || end - start > slowNanos) {
+                pausedUntil = end + pauseNanos;
+            } else {
+                prefetched.increment();
+            }
+
+            release(title);
+            executor.execute(this::drain);
+        });
+    }
+
+    private void release(String title) {
+        lock.lock();
+        try {
+            inFlight--;
+        } finally {
+            lock.unlock();
+        }
+        pending.remove(title);
+    }
+
+    private boolean isShedding() {
+        if (clock.getAsLong() - pausedUntil < 0) {
+            return true;
+        }
+        CircuitBreaker breaker = client.getCircuitBreaker();
+        return breaker != null && breaker.getState() != CircuitBreaker.State.CLOSED;
+    }
+
+    // Prefetches that completed in time.
+    public long getPrefetched() {
+        return prefetched.sum();
+    }
+
+    // Prefetches dropped because the wiki was slow or failing, the throttle had nothing to spare or
+    // the queue was full.
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+}
@@ -1,10 +1,33 @@
 package org.hytalewiki;
 
+import com.hypixel.hytale.assetstore.event.LoadedAssetsEvent;
+import com.hypixel.hytale.assetstore.event.RemovedAssetsEvent;
+import com.hypixel.hytale.assetstore.map.DefaultAssetMap;
 import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.asset.type.item.config.Item;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.event.events.entity.LivingEntityInventoryChangeEvent;
+import com.hypixel.hytale.server.core.inventory.Inventory;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import org.hytalewiki.net.TransportStats;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.cache.MappedResponseStore;
+import org.hytalewiki.net.cache.ResponseStore;
+import org.hytalewiki.net.cache.SnapshotResponseStore;
+import org.hytalewiki.net.search.SearchIndex;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class HytaleWikiPlugin extends JavaPlugin {
 
@@ -12,6 +35,41 @@ public class HytaleWikiPlugin extends JavaPlugin {
 
     public static final String HYTALE_WIKI_ORG_BASE_URL = "https://hytalewiki.org";
 
+    private WikiConfig config;
+
+    private WikiClient client;
+
+    private final AssetIndex assetIndex = new AssetIndex();
+
+    // Background work that must stay off the server threads.
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HytaleWiki-Background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Null if throttling is disabled.
+    private RequestThrottle requestThrottle;
+
+    // Virtual thread per task, null unless enabled in the transport config.
+    private ExecutorService lookupExecutor;
+
+    // Null unless prefetching is enabled.
+    private HotbarPrefetcher prefetcher;
+
+    // Null unless the cache is shared with other servers on the host.
+    private MappedResponseStore sharedStore;
+
+    // Null unless the cache is kept across restarts.
+    private SnapshotResponseStore warmStore;
+
+    // Null unless completion is enabled.
+    private TitleCompleter titleCompleter;
+
+    private CoverageAudit coverageAudit;
+
+    private final CommandStats commandStats = new CommandStats();
+
     public HytaleWikiPlugin(@Nonnull JavaPluginInit init) {
         super(init);
         LOGGER.atInfo().log("Loaded Hytale Wiki plugin " + this.getManifest().getVersion().toString());
@@ -19,7 +77,283 @@ public class HytaleWikiPlugin extends JavaPlugin {
 
     @Override
     protected void setup() {
+        this.config = WikiConfig.load(this.getDataDirectory().resolve("config.json"));
+
+        this.client = new WikiClient(HYTALE_WIKI_ORG_BASE_URL, this.config.getTransport().getVersion());
+        this.client.setRequestTimeout(this.config.getResilience().getRequestTimeout());
+        this.client.setRetryPolicy(this.config.getResilience().toRetryPolicy());
+        this.client.setCircuitBreaker(this.config.getResilience().toCircuitBreaker());
+        if (this.config.getTransport().isVirtualThreads()) {
+            this.lookupExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("HytaleWiki-Lookup-", 0).factory());
+            this.client.setExecutor(this.lookupExecutor);
+        }
+        if (this.config.getCache().isEnabled()) {
+            if (this.config.getShared().isEnabled()) {
+                this.sharedStore = openSharedStore();
+            }
+            ResponseStore store = this.sharedStore;
+            if (this.config.getWarm().isEnabled()) {
+                // Read on the first lookup, not here.
+                WikiConfig.Warm warm = this.config.getWarm();
+                this.warmStore = SnapshotResponseStore.open(this.getDataDirectory().resolve(warm.getFile()), warm.getMaxStale());
+                store = store != null ? ResponseStore.layered(store, this.warmStore) : this.warmStore;
+            }
+            this.client.enableCache(this.config.getCache().toSettings(), store);
+            if (this.warmStore != null) {
+                this.client.addInvalidationListener(new WarmStoreDiscarder(this.warmStore));
+            }
+        }
+        if (this.config.getBatching().isEnabled()) {
+            this.client.enableBatching(this.config.getBatching().getWindow(), this.config.getBatching().getMaxTitles());
+        }
+
+        if (this.config.getThrottle().isEnabled()) {
+            this.requestThrottle = this.config.getThrottle().toRequestThrottle();
+        }
+
+        if (this.config.getPrefetch().isEnabled()) {
+            if (this.config.getCache().isEnabled()) {
+                this.prefetcher = this.config.getPrefetch().toPrefetcher(this.client, this.requestThrottle, this.scheduler);
+                this.getEventRegistry().registerGlobal(LivingEntityInventoryChangeEvent.class, this::onInventoryChanged);
+            } else {
+                LOGGER.atWarning().log("Prefetching needs the cache, not prefetching");
+            }
+        }
+
+        if (this.config.getCompletion().isEnabled()) {
+            this.titleCompleter = this.config.getCompletion().toCompleter(this.client, this.requestThrottle,
+                    () -> this.assetIndex.entries().stream().map(AssetIndex.Entry::getTitle).toList());
+        }
+
+        this.coverageAudit = this.config.getAudit().toAudit(this.client, this.requestThrottle);
+
+        this.getEventRegistry().register(LoadedAssetsEvent.class, Item.class, this::onItemsLoaded);
+        this.getEventRegistry().register(RemovedAssetsEvent.class, Item.class, this::onItemsRemoved);
+
         this.getCommandRegistry().registerCommand(new WikiCommand(this));
         LOGGER.atInfo().log("Set up Hytale Wiki plugin " + this.getManifest().getVersion().toString());
     }
-}
\ No newline at end of file
+
+    // Dropping everything, e.g. when recent changes fell behind, outdates the whole snapshot. Single pages
+    // are superseded through the cache. The shared store is left alone, the other servers' caches are in it
+    // too and it gets the same per-key invalidations.
+    private record WarmStoreDiscarder(SnapshotResponseStore store) implements WikiClient.InvalidationListener {
+        @Override
+        public void invalidated(String pageKey) {
+        }
+
+        @Override
+        public void invalidatedAll() {
+            store.discard();
+        }
+    }
+
+    private void onItemsLoaded(LoadedAssetsEvent<String, Item, DefaultAssetMap<String, Item>> event) {
+        this.assetIndex.onItemsLoaded(event);
+        onItemTitlesChanged();
+    }
+
+    private void onItemsRemoved(RemovedAssetsEvent<String, Item, DefaultAssetMap<String, Item>> event) {
+        this.assetIndex.onItemsRemoved(event);
+        onItemTitlesChanged();
+    }
+
+    // Asset events come in bursts when packs are reloaded, so completions are rebuilt once for all of them,
+    // a second after the first.
+    private void onItemTitlesChanged() {
+        if (this.titleCompleter != null) {
+            this.titleCompleter.requestRebuild(CompletableFuture.delayedExecutor(1, TimeUnit.SECONDS, this.scheduler));
+        }
+    }
+
+    private MappedResponseStore openSharedStore() {
+        WikiConfig.Shared shared = this.config.getShared();
+        try {
+            MappedResponseStore store = shared.open();
+            LOGGER.atInfo().log("Sharing cached responses through " + store.getFile());
+            return store;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.atWarning().withCause(e).log("Failed to open " + shared.getFile() + ", not sharing the cache");
+            return null;
+        }
+    }
+
+    // Runs on the world thread, so only reads the hotbar and leaves the rest, even whether the pages are cached,
+    // to the prefetcher. Switching slots changes nothing in the inventory, so everything on the hotbar is offered,
+    // what the player holds last so it's fetched first. Titles already queued are skipped.
+    private void onInventoryChanged(LivingEntityInventoryChangeEvent event) {
+        if (!(event.getEntity() instanceof Player player)) {
+            return;
+        }
+
+        Inventory inventory = player.getInventory();
+        ItemStack held = inventory.getActiveHotbarItem();
+        ItemContainer hotbar = inventory.getHotbar();
+        for (short slot = 0; slot < hotbar.getCapacity(); slot++) {
+            ItemStack stack = hotbar.getItemStack(slot);
+            if (stack != null && stack != held) {
+                this.prefetcher.offer(this.assetIndex.resolve(stack.getItem()).getTitle());
+            }
+        }
+        if (held != null) {
+            this.prefetcher.offer(this.assetIndex.resolve(held.getItem()).getTitle());
+        }
+    }
+
+    @Override
+    protected void start() {
+        // Assets are loaded by now.
+        CompletableFuture<Void> assetsIndexed = this.assetIndex.build().exceptionally(throwable -> {
+            LOGGER.atWarning().withCause(throwable).log("Failed to build the asset index");
+            return null;
+        });
+
+        if (this.titleCompleter != null) {
+            // Item titles can be completed right away, the wiki's once the first refresh is done.
+            assetsIndexed.thenRun(this.titleCompleter::rebuild);
+            long refresh = this.config.getCompletion().getRefreshInterval().toSeconds();
+            this.scheduler.scheduleWithFixedDelay(() -> this.titleCompleter.refresh().whenComplete((titles, throwable) -> {
+                if (throwable != null) {
+                    LOGGER.atWarning().log("Failed to refresh the wiki titles to complete: " + throwable.getMessage());
+                }
+            }), 0, refresh, TimeUnit.SECONDS);
+        }
+
+        WikiConfig.Transport transport = this.config.getTransport();
+
+        if (this.config.getSearch().isLocal()) {
+            this.scheduler.execute(this::loadSearchIndex);
+        }
+
+        if (transport.isWarmUp()) {
+            this.client.warmUp().whenComplete((version, throwable) -> {
+                if (throwable != null) {
+                    LOGGER.atWarning().log("Failed to warm up the connection to the wiki: " + throwable.getMessage());
+                } else {
+                    LOGGER.atInfo().log("Connected to the wiki using " + version);
+                }
+            });
+        }
+
+        WikiConfig.Sync sync = this.config.getSync();
+        if (sync.isEnabled()) {
+            if (this.config.getCache().isEnabled()) {
+                startRecentChangesSync(sync);
+            } else {
+                LOGGER.atWarning().log("Following recent changes needs the cache, not following them");
+            }
+        }
+
+        long keepAlive = transport.getKeepAlive().toSeconds();
+        if (keepAlive > 0) {
+            this.scheduler.scheduleWithFixedDelay(() -> this.client.keepAlive(transport.getKeepAlive()),
+                    keepAlive, keepAlive, TimeUnit.SECONDS);
+        }
+    }
+
+    private void startRecentChangesSync(WikiConfig.Sync settings) {
+        RecentChangesSync sync = new RecentChangesSync(this.client, this.getDataDirectory().resolve("recentchanges.json"), settings.getLimit());
+        try {
+            sync.load();
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log("Failed to read where recent changes left off, starting from now");
+        }
+
+        long interval = settings.getInterval().toSeconds();
+        this.scheduler.scheduleWithFixedDelay(() -> sync.poll().whenComplete((applied, throwable) -> {
+            if (throwable != null) {
+                LOGGER.atWarning().log("Failed to poll recent changes: " + throwable.getMessage());
+            }
+        }), interval, interval, TimeUnit.SECONDS);
+    }
+
+    // Searches go to the wiki until this is done.
+    private void loadSearchIndex() {
+        WikiConfig.Search search = this.config.getSearch();
+        Path snapshot = this.getDataDirectory().resolve(search.getSnapshot());
+        try {
+            SearchIndex index = SearchIndex.open(snapshot, this.getDataDirectory().resolve(search.getIndex()));
+            if (index == null) {
+                LOGGER.atWarning().log("No wiki snapshot at " + snapshot + ", searching the wiki instead");
+                return;
+            }
+            this.client.setSearchIndex(index);
+            LOGGER.atInfo().log("Searching " + index.size() + " pages locally");
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log("Failed to load the search index, searching the wiki instead");
+        }
+    }
+
+    @Override
+    protected void shutdown() {
+        this.scheduler.shutdownNow();
+        if (this.lookupExecutor != null) {
+            this.lookupExecutor.shutdownNow();
+        }
+        if (this.warmStore != null) {
+            saveWarmSnapshot();
+            this.warmStore.close();
+        }
+        if (this.sharedStore != null) {
+            this.sharedStore.close();
+        }
+    }
+
+    private void saveWarmSnapshot() {
+        try {
+            int saved = this.client.saveSnapshot(this.warmStore.getFile(), this.config.getWarm().getMaxEntries());
+            LOGGER.atInfo().log("Kept " + saved + " cached responses for the next start");
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log("Failed to write " + this.warmStore.getFile());
+        }
+    }
+
+    public WikiConfig getWikiConfig() {
+        return config;
+    }
+
+    public WikiClient getClient() {
+        return client;
+    }
+
+    public AssetIndex getAssetIndex() {
+        return assetIndex;
+    }
+
+    public RequestThrottle getRequestThrottle() {
+        return requestThrottle;
+    }
+
+    // Null unless completion is enabled.
+    public TitleCompleter getTitleCompleter() {
+        return titleCompleter;
+    }
+
+    public CoverageAudit getCoverageAudit() {
+        return coverageAudit;
+    }
+
+    // Null unless prefetching is enabled.
+    public HotbarPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    public CommandStats getCommandStats() {
+        return commandStats;
+    }
+
+    public StatsSnapshot snapshotStats() {
+        TransportStats transport = this.client.getTransportStats();
+        return new StatsSnapshot(Instant.now(), this.client.snapshotEndpointStats(), this.commandStats.snapshot(),
+                transport.getExchanges(), transport.getPeakInFlight());
+    }
+
+    // Null unless lookups run on virtual threads.
+    public ExecutorService getLookupExecutor() {
+        return lookupExecutor;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+}
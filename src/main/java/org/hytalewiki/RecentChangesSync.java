@@ -0,0 +1,180 @@
+package org.hytalewiki;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.response.RecentChanges;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps cached wiki data fresh by following the wiki's recent changes instead of relying on TTLs alone.
+// Each poll is one small request for what changed since the last one, however much is cached, and exactly
+// the changed pages are dropped. Where to continue is stored on disk, so changes made while the server
+// was down are picked up on the next start.
+public class RecentChangesSync {
+
+    private static final Gson GSON = new Gson();
+
+    // Changes a little older than the first poll are picked up as well, in case the clocks disagree.
+    private static final Duration START_MARGIN = Duration.ofMinutes(1);
+
+    private final WikiClient client;
+
+    private final Path stateFile;
+
+    private final int limit;
+
+    private final Clock clock;
+
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    // Only touched by the poll in progress.
+    private State state = new State();
+    private boolean behind;
+
+    // What's stored on disk. Without a token, the next poll asks for everything since the given time.
+    private static class State {
+        private String token;
+        private String since;
+    }
+
+    public RecentChangesSync(WikiClient client, Path stateFile, int limit) {
+        this(client, stateFile, limit, Clock.systemUTC());
+    }
+
+    RecentChangesSync(WikiClient client, Path stateFile, int limit, Clock clock) {
+        this.client = client;
+        this.stateFile = stateFile;
+        this.limit = limit;
+        this.clock = clock;
+    }
+
+    // Resume from the stored state, if there is any.
+    public void load() throws IOException {
+        if (!Files.exists(stateFile)) {
+            return;
+        }
+
+        try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+            State loaded = GSON.fromJson(reader, State.class);
+            if (loaded != null) {
+                this.state = loaded;
+            }
+        } catch (JsonParseException e) {
+            throw new IOException("Malformed " + stateFile, e);
+        }
+    }
+
+    // Completes with the number of changes applied. Does nothing while the previous poll is still running.
+    public CompletableFuture<Integer> poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        try {
+            if (state.token == null && since() == null) {
+                // Stored right away, so changes made before the next start aren't missed even if this finds none.
+                state.since = clock.instant().minus(START_MARGIN).toString();
+                save();
+            }
+            return client.recentChangesAsync(state.token, since(), limit)
+                    .thenApply(this::apply)
+                    .whenComplete((applied, throwable) -> polling.set(false));
+        } catch (RuntimeException e) {
+            polling.set(false);
+            throw e;
+        }
+    }
+
+    private Instant since() {
+        try {
+            return state.since != null ? Instant.parse(state.since) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private int apply(RecentChanges result) {
+        List<RecentChanges.Change> changes = result.getChanges();
+
+        // Titles as the wiki reports them. Creations, moves and deletions change what any search finds.
+        Set<String> titles = new LinkedHashSet<>();
+        boolean structural = false;
+        for (RecentChanges.Change change : changes) {
+            titles.add(change.title());
+            if (change.target() != null) {
+                titles.add(change.target());
+            }
+            structural |= "new".equals(change.type())
+                    || "move".equals(change.logType()) || "delete".equals(change.logType());
+        }
+
+        for (String title : titles) {
+            client.invalidatePage(title);
+            if (!structural) {
+                client.invalidateSearchesFor(title);
+            }
+        }
+        if (structural) {
+            client.invalidateSearches();
+        }
+
+        if (result.getContinueToken() != null) {
+            // More changes piled up than one poll covers, e.g. while the server was down. Anything cached may
+            // be outdated until the rest are worked off, one poll at a time, so drop everything once.
+            if (!behind) {
+                client.invalidateAll();
+                behind = true;
+            }
+            state.token = result.getContinueToken();
+            save();
+        } else {
+            behind = false;
+            if (!changes.isEmpty()) {
+                state.token = continueAfter(changes.getLast());
+                save();
+            }
+        }
+        return changes.size();
+    }
+
+    // MediaWiki continues at the change with the given timestamp and ID or after it, so the next ID
+    // continues right after this one.
+    static String continueAfter(RecentChanges.Change change) {
+        return change.timestamp().replaceAll("[^0-9]", "") + "|" + (change.id() + 1);
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(stateFile.getParent());
+            Path temporary = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                GSON.toJson(state, writer);
+            }
+            Files.move(temporary, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write " + stateFile, e);
+        }
+    }
+
+    // The continuation token the next poll starts from, null before the first change was seen.
+    public String getToken() {
+        return state.token;
+    }
+}
@@ -0,0 +1,113 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.TokenBucket;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Limits how many wiki requests commands send, both per sender and for the whole server.
+// A sender over their budget is rejected right away, requests over the global budget wait
+// for a token as long as the queue isn't deeper than maxQueued.
+public class RequestThrottle {
+
+    // Idle buckets are only swept once there are this many, and at most once per interval.
+    private static final int SWEEP_THRESHOLD = 256;
+    private static final long SWEEP_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+
+    // How long to wait before asking again when there is no token to spare.
+    private static final long SPARE_POLL_MILLIS = 250;
+
+    private final TokenBucket global;
+    private final int globalBurst;
+
+    private final long maxWaitNanos;
+
+    private final double senderPerSecond;
+    private final int senderBurst;
+
+    private final ConcurrentHashMap<UUID, TokenBucket> senders = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    public RequestThrottle(double globalPerSecond, int globalBurst, int maxQueued,
+                           double senderPerSecond, int senderBurst) {
+        this.global = new TokenBucket(globalPerSecond, globalBurst);
+        this.globalBurst = globalBurst;
+        this.maxWaitNanos = this.global.getIntervalNanos() * maxQueued;
+        this.senderPerSecond = senderPerSecond;
+        this.senderBurst = senderBurst;
+    }
+
+    public enum Outcome {
+        ADMITTED,
+        SENDER_LIMITED,
+        GLOBAL_LIMITED
+    }
+
+    public static class Ticket {
+        private final Outcome outcome;
+        private final long delayNanos;
+
+        Ticket(Outcome outcome, long delayNanos) {
+            this.outcome = outcome;
+            this.delayNanos = delayNanos;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        // For admitted requests, how long they have to wait in the queue.
+        // For rejected ones, roughly when trying again would work.
+        public long getDelayNanos() {
+            return delayNanos;
+        }
+    }
+
+    public Ticket acquire(UUID sender) {
+        sweep();
+
+        TokenBucket bucket = senders.computeIfAbsent(sender, uuid -> new TokenBucket(senderPerSecond, senderBurst));
+        if (!bucket.tryAcquire()) {
+            return new Ticket(Outcome.SENDER_LIMITED, bucket.timeUntilAvailable());
+        }
+
+        long wait = global.reserve(maxWaitNanos);
+        if (wait < 0) {
+            // Nothing is sent, so it doesn't count against the sender either.
+            bucket.refund();
+            return new Ticket(Outcome.GLOBAL_LIMITED, global.timeUntilAvailable());
+        }
+        return new Ticket(Outcome.ADMITTED, wait);
+    }
+
+    // Drop the buckets of senders that have been idle long enough to have refilled. Only one caller sweeps
+    // per interval, the others go on right away.
+    private void sweep() {
+        long now = System.nanoTime();
+        long next = nextSweep.get();
+        if (now - next < 0 || senders.size() <= SWEEP_THRESHOLD || !nextSweep.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        senders.values().removeIf(TokenBucket::isFull);
+    }
+
+    // For background requests nobody is waiting for: takes a global token without queueing, and only
+    // while at least half the burst is left for commands.
+    public boolean tryAcquireSpare() {
+        return global.tryAcquireLeaving(globalBurst / 2);
+    }
+
+    // Completes once tryAcquireSpare took a token, without holding a thread while there is none.
+    public CompletableFuture<Void> acquireSpare() {
+        if (tryAcquireSpare()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(SPARE_POLL_MILLIS, TimeUnit.MILLISECONDS)).thenCompose(ignored -> acquireSpare());
+    }
+}
@@ -0,0 +1,14 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.EndpointStats;
+
+import java.time.Instant;
+import java.util.List;
+
+// Point in time view of the plugin's stats, see HytaleWikiPlugin.snapshotStats().
+public record StatsSnapshot(Instant takenAt,
+                            List<EndpointStats.Snapshot> endpoints,
+                            List<CommandStats.Snapshot> commands,
+                            long exchanges,
+                            int peakInFlight) {
+}
@@ -0,0 +1,135 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.search.FuzzyTitleIndex;
+import org.hytalewiki.net.search.TitleIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+// Completes wiki titles for command arguments as they are typed. Completions come from an immutable
+// TitleIndex of every article title on the wiki plus the titles items resolve to, which is rebuilt in
+// the background and swapped in whole, so completing never waits for anything, let alone the network.
+// A FuzzyTitleIndex over the same titles resolves near-misses of them the same way. Each batch of titles
+// is only asked for with a global token the throttle can spare, like audit and prefetch requests.
+public class TitleCompleter {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final WikiClient client;
+
+    // Null if throttling is disabled.
+    private final RequestThrottle throttle;
+
+    // Titles known without asking the wiki, e.g. those of items.
+    private final Supplier<Collection<String>> localTitles;
+
+    private final int maxTitles;
+
+    private final int maxSuggestions;
+
+    private final int maxEditDistance;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    // The wiki's titles as of the last refresh that got all of them.
+    private volatile List<String> wikiTitles = List.of();
+
+    private volatile TitleIndex index = TitleIndex.EMPTY;
+
+    private volatile FuzzyTitleIndex fuzzyIndex = FuzzyTitleIndex.EMPTY;
+
+    public TitleCompleter(WikiClient client, RequestThrottle throttle, Supplier<Collection<String>> localTitles,
+                          int maxTitles, int maxSuggestions, int maxEditDistance) {
+        this.client = client;
+        this.throttle = throttle;
+        this.localTitles = localTitles;
+        this.maxTitles = maxTitles;
+        this.maxSuggestions = maxSuggestions;
+        this.maxEditDistance = maxEditDistance;
+    }
+
+    // Fetch the wiki's titles and rebuild the index. Completes with the number of titles indexed, or with
+    // the failure, in which case the index is rebuilt with the titles the previous refresh got.
+    // Does nothing while the previous refresh is still running.
+    public CompletableFuture<Integer> refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(index.size());
+        }
+
+        List<String> titles = new ArrayList<>();
+        return fetch(null, titles).handle((ignored, throwable) -> {
+            try {
+                if (throwable == null) {
+                    this.wikiTitles = List.copyOf(titles);
+                }
+                rebuild();
+            } finally {
+                refreshing.set(false);
+            }
+            if (throwable != null) {
+                throw throwable instanceof CompletionException completion ? completion : new CompletionException(throwable);
+            }
+            return index.size();
+        });
+    }
+
+    // Follows continuation tokens one batch at a time until all titles, or maxTitles of them, are in.
+    private CompletableFuture<Void> fetch(String continueToken, List<String> titles) {
+        int limit = Math.min(BATCH_SIZE, maxTitles - titles.size());
+        if (limit <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> admitted = throttle != null ? throttle.acquireSpare() : CompletableFuture.completedFuture(null);
+        return admitted.thenCompose(ignored -> client.allPagesAsync(continueToken, limit)).thenCompose(result -> {
+            titles.addAll(result.getTitles());
+            if (result.getContinueToken() == null || result.getTitles().isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return fetch(result.getContinueToken(), titles);
+        });
+    }
+
+    // Rebuild the index without asking the wiki, e.g. because local titles changed. The wiki's titles come
+    // first, so their spelling wins.
+    public synchronized void rebuild() {
+        List<String> titles = new ArrayList<>(wikiTitles);
+        titles.addAll(localTitles.get());
+        this.index = TitleIndex.of(titles);
+        this.fuzzyIndex = FuzzyTitleIndex.of(titles, maxEditDistance);
+    }
+
+    // Rebuild on the executor, once for all requests made until it starts, e.g. for the many asset events
+    // of a reload.
+    public void requestRebuild(Executor executor) {
+        if (rebuildRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                rebuildRequested.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    // Up to maxSuggestions titles for what was typed so far.
+    public List<String> complete(String text) {
+        return index.complete(text, maxSuggestions);
+    }
+
+    // The title the text is, or is a near-miss of, or null if there is none within maxEditDistance edits.
+    public String resolve(String text) {
+        return fuzzyIndex.resolve(text);
+    }
+
+    public int size() {
+        return index.size();
+    }
+}
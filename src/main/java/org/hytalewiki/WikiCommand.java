@@ -8,10 +8,11 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.arguments.system.RequiredArg;
 import com.hypixel.hytale.server.core.command.system.arguments.types.ArgTypes;
 import com.hypixel.hytale.server.core.command.system.basecommands.AbstractAsyncCommand;
+import com.hypixel.hytale.server.core.command.system.suggestion.SuggestionProvider;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.inventory.ItemStack;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
-import org.hytalewiki.net.RequestException;
+import org.hytalewiki.net.EndpointStats;
 import org.hytalewiki.net.WikiClient;
 import org.hytalewiki.net.response.PageObject;
 import org.hytalewiki.net.response.SearchEntry;
@@ -19,9 +20,15 @@ import org.hytalewiki.net.response.SearchResult;
 
 import javax.annotation.Nonnull;
 import java.awt.*;
-import java.util.Iterator;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class WikiCommand extends AbstractAsyncCommand {
 
@@ -29,11 +36,19 @@ public class WikiCommand extends AbstractAsyncCommand {
 
     private final HytaleWikiPlugin plugin;
 
-    private final WikiClient client = new WikiClient(HytaleWikiPlugin.HYTALE_WIKI_ORG_BASE_URL);
+    private final WikiClient client;
+
+    private final CommandStats stats;
+
+    private final WikiMessages messages;
 
     public WikiCommand(HytaleWikiPlugin plugin) {
         super("wiki", "Opens a wiki link for the specified item.");
         this.plugin = plugin;
+        this.client = plugin.getClient();
+        this.stats = plugin.getCommandStats();
+        this.messages = new WikiMessages(this.client);
+        this.client.addInvalidationListener(this.messages);
 
         this.setPermissionGroup(GameMode.Adventure);
 
@@ -41,9 +56,24 @@ public class WikiCommand extends AbstractAsyncCommand {
 
         this.addSubCommand(new WikiPageCommand(this));
         this.addSubCommand(new WikiHandCommand(this));
+        this.addSubCommand(new WikiStatsCommand(this));
+        this.addSubCommand(new WikiAuditCommand(this));
         this.addUsageVariant(new WikiSearchCommand(this));
     }
 
+    // Suggests wiki titles for what was typed so far, formatted for the argument.
+    private SuggestionProvider titleSuggestions(Function<String, String> format) {
+        return (sender, text, parameters, result) -> {
+            TitleCompleter completer = this.plugin.getTitleCompleter();
+            if (completer == null) {
+                return;
+            }
+            for (String title : completer.complete(text.replace("\"", ""))) {
+                result.suggest(format.apply(title));
+            }
+        };
+    }
+
     private static class WikiHandCommand extends AbstractAsyncCommand {
         private final WikiCommand parent;
 
@@ -57,6 +87,8 @@ public class WikiCommand extends AbstractAsyncCommand {
         @NonNullDecl
         @Override
         protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext context) {
+            this.parent.stats.onInvoked("hand");
+
             if (!(context.sender() instanceof Player player)) {
                 context.sendMessage(Message.raw("Only players can do this.").color(Color.RED));
                 return CompletableFuture.completedFuture(null);
@@ -71,24 +103,21 @@ public class WikiCommand extends AbstractAsyncCommand {
 
             Item item = activeHotbarItem.getItem();
 
-            String displayName = this.parent.getDisplayName(item);
+            String displayName = this.parent.plugin.getAssetIndex().resolve(item).getTitle();
 
             // HytaleWiki uses display names instead of in-game ids for page keys
 
-            PageObject page;
-            try {
-                page = this.parent.client.page(displayName);
-            } catch (RequestException e) {
-                return CompletableFuture.failedFuture(e);
-            }
+            boolean cached = this.parent.client.isPageCached(displayName);
 
-            if (page == null || page.getKey() == null) {
-                context.sendMessage(this.parent.makeCreateNotice(displayName));
-                return CompletableFuture.completedFuture(null);
-            }
+            return this.parent.throttled(context, "hand", cached, () -> this.parent.client.pageAsync(displayName).thenAccept(page -> {
+                if (page == null || page.getKey() == null) {
+                    this.parent.stats.onNotFound("hand");
+                    context.sendMessage(this.parent.messages.makeCreateNotice(displayName));
+                    return;
+                }
 
-            context.sendMessage(this.parent.makeResultRow(page.getTitle(), page.getKey()));
-            return CompletableFuture.completedFuture(null);
+                context.sendMessage(this.parent.messages.makeResultRow(page.getTitle(), page.getKey()));
+            }));
         }
     }
 
@@ -105,54 +134,57 @@ public class WikiCommand extends AbstractAsyncCommand {
 
             this.requirePermission("hytalewiki.wiki.search");
 
-            this.termArg = this.withRequiredArg("term", "Term to search for.", ArgTypes.STRING);
+            // Quoted, so titles of several words stay one argument.
+            this.termArg = this.withRequiredArg("term", "Term to search for.", ArgTypes.STRING)
+                    .suggest(command.titleSuggestions(title -> title.contains(" ") ? "\"" + title + "\"" : title));
         }
 
         @NonNullDecl
         @Override
         protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext context) {
             // Attempt a search, look for exact matches
+            this.parent.stats.onInvoked("search");
 
             String term = context.get(this.termArg)
                     // String extra quotes when using "Hello world" syntax for string arguments
                     .replace("\"", "");
 
             String query = term;
-            SearchResult result;
 
-            Item existingItem = Item.getAssetStore().getAssetMap().getAsset(term);
+            AssetIndex.Entry asset = this.parent.plugin.getAssetIndex().resolve(term);
 
             boolean transformed = false;
 
-            if (existingItem != null) {
-                // Item exists, which means the term was an in-game ID.
+            if (asset != null) {
+                // Asset exists, which means the term was an in-game ID.
                 // We use display names on the wiki.
-                query = this.parent.getDisplayName(existingItem);
+                query = asset.getTitle();
                 transformed = true;
             }
 
-            try {
-                result = this.parent.client.search(query, 10);
-            } catch (RequestException e) {
-                return CompletableFuture.failedFuture(e);
-            }
+            final String finalQuery = query;
+            final boolean finalTransformed = transformed;
 
-            final SearchEntry exactMatch = parent.findExactMatch(result, query);
+            boolean cached = this.parent.client.isSearchCached(query, 10);
 
-            Message message = parent.makeHeader("Results");
+            return this.parent.throttled(context, "search", cached, () -> this.parent.client.searchAsync(finalQuery, 10).thenAccept(result -> {
+                final SearchEntry exactMatch = findExactMatch(result, finalQuery);
 
-            if (transformed) {
-                message.insert(this.parent.makeQueryChangeNotice(query)).insert("\n");
-            }
+                Message message = parent.messages.makeHeader("Results");
 
-            if (exactMatch == null) {
-                message.insert(this.parent.makeCreateNotice(query)).insert("\n");
-            }
+                if (finalTransformed) {
+                    message.insert(this.parent.messages.makeQueryChangeNotice(finalQuery)).insert("\n");
+                }
 
-            message.insert(parent.makeResultList(result.getPages()));
+                if (exactMatch == null) {
+                    this.parent.stats.onNotFound("search");
+                    message.insert(this.parent.messages.makeCreateNotice(finalQuery)).insert("\n");
+                }
 
-            context.sendMessage(message);
-            return CompletableFuture.completedFuture(null);
+                message.insert(parent.messages.makeResultList(result.getPages()));
+
+                context.sendMessage(message);
+            }));
         }
     }
 
@@ -167,136 +199,304 @@ public class WikiCommand extends AbstractAsyncCommand {
 
             this.requirePermission("hytalewiki.wiki.page");
 
-            this.keyArg = this.withRequiredArg("key", "The key to search for.", ArgTypes.STRING);
+            this.keyArg = this.withRequiredArg("key", "The key to search for.", ArgTypes.STRING)
+                    .suggest(command.titleSuggestions(title -> title.replace(' ', '_')));
         }
 
         @NonNullDecl
         @Override
         protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext context) {
+            stats.onInvoked("page");
+
             String key = context.get(this.keyArg)
                     // String extra quotes when using "Hello world" syntax for string arguments
                     .replace("\"", "");
 
-            Item existingItem = Item.getAssetStore().getAssetMap().getAsset(key);
+            AssetIndex.Entry asset = this.parent.plugin.getAssetIndex().resolve(key);
 
             String query = key;
 
             boolean transformed = false;
 
-            if (existingItem != null) {
-                // Item exists, which means the term was an in-game ID.
-                // We use display names on the wiki.
+            // Whether the query corrects a typo in the key, whose own page is asked for if the correction has none.
+            boolean corrected = false;
+
+            // Whether the wiki's search gets a go at a key without a page.
+            boolean search = false;
 
-                // todo: expand to other ID types as well
+            TitleCompleter completer = this.parent.plugin.getTitleCompleter();
 
-                query = this.parent.getDisplayName(existingItem);
+            if (asset != null) {
+                // Asset exists, which means the term was an in-game ID.
+                // We use display names on the wiki.
+                query = asset.getTitle();
                 transformed = true;
+            } else if (completer != null) {
+                // A known title, or a typo of one, "Iorn_Shovel" for "Iron Shovel". Keys that aren't close to any
+                // known title may still be pages the titles fetched don't have, or close to one the search finds.
+                String title = completer.resolve(key);
+                if (title != null) {
+                    query = title;
+                    transformed = !title.equals(key.replace('_', ' '));
+                    corrected = !title.equalsIgnoreCase(key.replace('_', ' ').strip());
+                } else {
+                    search = true;
+                }
             }
 
-            PageObject page;
-            try {
-                page = client.page(query);
-            } catch (RequestException e) {
-                return CompletableFuture.failedFuture(e);
-            }
+            final String finalQuery = query;
+            final boolean finalTransformed = transformed;
+            final boolean finalCorrected = corrected;
+            final boolean finalSearch = search;
+
+            boolean cached = client.isPageCached(query);
+
+            return throttled(context, "page", cached, () -> client.pageAsync(finalQuery).thenCompose(page -> {
+                if (page != null && page.getKey() != null) {
+                    context.sendMessage(resultMessage(finalTransformed ? finalQuery : null, page));
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                if (!finalCorrected) {
+                    return notFound(context, finalTransformed ? finalQuery : null, finalQuery, finalSearch);
+                }
+
+                // The title the key looks like a typo of has no page, maybe the key has one after all, as the
+                // known titles may be out of date. Over budget or failing, it's as good as missing.
+                return followUp(context, "page", client.isPageCached(key), () -> client.pageAsync(key))
+                        .handle((keyPage, throwable) -> keyPage)
+                        .thenCompose(keyPage -> {
+                            if (keyPage != null && keyPage.getKey() != null) {
+                                context.sendMessage(resultMessage(null, keyPage));
+                                return CompletableFuture.completedFuture(null);
+                            }
+                            return notFound(context, finalQuery, finalQuery, false);
+                        });
+            }));
+        }
 
+        // The page's row, after a notice that it was asked for as changedTo unless that's null.
+        private Message resultMessage(String changedTo, PageObject page) {
             Message message = Message.empty();
+            if (changedTo != null) {
+                message.insert(messages.makeQueryChangeNotice(changedTo)).insert("\n");
+            }
+            return message.insert(messages.makeResultRow(page.getTitle(), page.getKey()));
+        }
+
+        // Tell there's no page for the query, with what the wiki's search finds for it if search is set.
+        private CompletableFuture<Void> notFound(CommandContext context, String changedTo, String query, boolean search) {
+            stats.onNotFound("page");
 
-            if (transformed) {
-                message.insert(this.parent.makeQueryChangeNotice(query)).insert("\n");
+            Message message = Message.empty();
+            if (changedTo != null) {
+                message.insert(messages.makeQueryChangeNotice(changedTo)).insert("\n");
             }
+            message.insert(messages.makeCreateNotice(query));
 
-            if (page == null || page.getKey() == null) {
-                context.sendMessage(message.insert(makeCreateNotice(query)));
+            if (!search) {
+                context.sendMessage(message);
                 return CompletableFuture.completedFuture(null);
             }
 
-            context.sendMessage(message.insert(this.parent.makeResultRow(page.getTitle(), page.getKey())));
+            // Nothing known is close to the key, so let the wiki's search have a go at it. If that fails, or is
+            // over budget, there is still no such page to tell about.
+            return followUp(context, "page", client.isSearchCached(query, 10), () -> client.searchAsync(query, 10)).handle((result, throwable) -> {
+                if (result != null && !result.getPages().isEmpty()) {
+                    message.insert("\n").insert(messages.makeResultList(result.getPages()));
+                }
+                context.sendMessage(message);
+                return null;
+            });
+        }
+    }
+
+    private static class WikiStatsCommand extends AbstractAsyncCommand {
+        private final WikiCommand parent;
+
+        WikiStatsCommand(WikiCommand command) {
+            super("stats", "Show request and command stats of the wiki plugin.");
+            this.parent = command;
+
+            this.requirePermission("hytalewiki.wiki.stats");
+        }
+
+        @NonNullDecl
+        @Override
+        protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext context) {
+            StatsSnapshot snapshot = this.parent.plugin.snapshotStats();
+
+            Message message = this.parent.messages.makeHeader("Stats");
+            for (EndpointStats.Snapshot endpoint : snapshot.endpoints()) {
+                message.insert(this.parent.messages.makeEndpointStatsRow(endpoint)).insert("\n");
+            }
+            for (CommandStats.Snapshot command : snapshot.commands()) {
+                message.insert(this.parent.messages.makeCommandStatsRow(command)).insert("\n");
+            }
+            HotbarPrefetcher prefetcher = this.parent.plugin.getPrefetcher();
+            if (prefetcher != null) {
+                message.insert(Message.raw("prefetched " + prefetcher.getPrefetched() + ", shed " + prefetcher.getShed()
+                        + ", pending " + prefetcher.getPending()).color(Color.lightGray)).insert("\n");
+            }
+            message.insert(Message.raw(snapshot.exchanges() + " exchanges, at most " + snapshot.peakInFlight() + " at once")
+                    .color(Color.lightGray));
+
+            context.sendMessage(message);
             return CompletableFuture.completedFuture(null);
         }
     }
 
+    private static class WikiAuditCommand extends AbstractAsyncCommand {
+        private final WikiCommand parent;
+
+        WikiAuditCommand(WikiCommand command) {
+            super("audit", "Check which items have no wiki page and write a report.");
+            this.parent = command;
+
+            this.requirePermission("hytalewiki.wiki.audit");
+        }
+
+        @NonNullDecl
+        @Override
+        protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext context) {
+            this.parent.stats.onInvoked("audit");
+
+            HytaleWikiPlugin plugin = this.parent.plugin;
+            CoverageAudit audit = plugin.getCoverageAudit();
+
+            if (!plugin.getAssetIndex().isBuilt()) {
+                context.sendMessage(Message.raw("Items aren't indexed yet, try again in a moment.").color(Color.RED));
+                return CompletableFuture.completedFuture(null);
+            }
+            if (audit.isRunning()) {
+                context.sendMessage(Message.raw("An audit is already running.").color(Color.RED));
+                return CompletableFuture.completedFuture(null);
+            }
+
+            List<CoverageAudit.Asset> assets = plugin.getAssetIndex().entries().stream()
+                    .map(entry -> new CoverageAudit.Asset(entry.getId(), entry.getTitle()))
+                    .toList();
+            Path directory = plugin.getDataDirectory().resolve(plugin.getWikiConfig().getAudit().getDirectory());
+
+            context.sendMessage(this.parent.messages.makeHeader("Audit")
+                    .insert(Message.raw("Checking " + assets.size() + " items against the wiki...").color(Color.lightGray)));
+
+            // The report is written on the background thread, the lookups don't need one.
+            return audit.run(assets, progress -> context.sendMessage(this.parent.messages.makeAuditProgress(progress)))
+                    .thenAcceptAsync(report -> {
+                        Message message = this.parent.messages.makeAuditSummary(report);
+                        try {
+                            for (Path file : report.write(directory)) {
+                                message.insert("\n").insert(Message.raw("Wrote " + file).color(Color.lightGray));
+                            }
+                        } catch (IOException e) {
+                            log.atWarning().withCause(e).log("Failed to write the audit report to " + directory);
+                            message.insert("\n").insert(Message.raw("Failed to write the report, see the server log.").color(Color.RED));
+                        }
+                        context.sendMessage(message);
+                    }, plugin.getScheduler())
+                    .whenComplete((ignored, throwable) -> {
+                        if (throwable != null) {
+                            this.parent.stats.onFailure("audit");
+                            context.sendMessage(Message.raw("The audit failed: " + throwable.getMessage()).color(Color.RED));
+                        }
+                    });
+        }
+    }
+
     @NonNullDecl
     @Override
     protected CompletableFuture<Void> executeAsync(@NonNullDecl CommandContext context) {
         // Link to the base wiki page
 
         context.sendMessage(Message.join(
-                makeHeader("HytaleWiki.org"),
+                messages.makeHeader("HytaleWiki.org"),
                 Message.raw("[ Click to open ]").link(client.getBaseUrl()).color(Colors.HYPIXEL_BUTTON_COLOR)
         ));
 
         return CompletableFuture.completedFuture(null);
     }
 
-    private SearchEntry findExactMatch(SearchResult result, String term) {
-        SearchEntry exactMatch = null;
+    // Run a wiki lookup once the sender is within the request budget. Cached answers don't count against it.
+    private CompletableFuture<Void> throttled(CommandContext context, String command, boolean cached, Supplier<CompletableFuture<Void>> lookup) {
+        return admit(context, command, cached, lookup).whenComplete((ignored, throwable) -> {
+            if (throwable != null) {
+                this.stats.onFailure(command);
+            }
+        });
+    }
 
-        for (SearchEntry entry : result.getPages()) {
-            if (entry.getTitle().equalsIgnoreCase(term)) {
-                exactMatch = entry;
-                break;
+    private CompletableFuture<Void> admit(CommandContext context, String command, boolean cached, Supplier<CompletableFuture<Void>> lookup) {
+        RequestThrottle throttle = this.plugin.getRequestThrottle();
+        if (cached || throttle == null) {
+            return start(lookup);
+        }
+
+        RequestThrottle.Ticket ticket = throttle.acquire(context.sender().getUuid());
+
+        switch (ticket.getOutcome()) {
+            case SENDER_LIMITED -> {
+                this.stats.onThrottled(command);
+                context.sendMessage(messages.makeThrottledNotice("You're using the wiki too quickly.", ticket));
+                return CompletableFuture.completedFuture(null);
+            }
+            case GLOBAL_LIMITED -> {
+                this.stats.onThrottled(command);
+                context.sendMessage(messages.makeThrottledNotice("The wiki is busy right now.", ticket));
+                return CompletableFuture.completedFuture(null);
             }
         }
-        return exactMatch;
-    }
 
-    private Message makeHeader(String title) {
-        return Message.raw("== ").color(Colors.WIKI_SECTION_COLOR)
-                .insert(Message.raw(title).color(Color.WHITE).bold(true))
-                .insert(Message.raw(" ==\n").color(Colors.WIKI_SECTION_COLOR));
+        if (ticket.getDelayNanos() == 0) {
+            return start(lookup);
+        }
+        return queued(ticket, lookup);
     }
 
-    private Message makeResultRow(SearchEntry entry) {
-        return makeResultRow(entry.getTitle(), entry.getKey());
-    }
+    // Another request for a lookup already admitted, counted against the budget like the first. Over budget,
+    // it isn't sent and completes with null, and the lookup answers with what it has.
+    private <T> CompletableFuture<T> followUp(CommandContext context, String command, boolean cached, Supplier<CompletableFuture<T>> request) {
+        RequestThrottle throttle = this.plugin.getRequestThrottle();
+        if (cached || throttle == null) {
+            return request.get();
+        }
 
-    private Message makeResultRow(String title, String key) {
-        return Message.join(Message.raw(title).color(Colors.HYPIXEL_TEXT_COLOR),
-                Message.raw("     "),
-                Message.raw("[ View ]")
-                        .color(Colors.HYPIXEL_BUTTON_COLOR)
-                        .link(this.client.getPageUrl(key)),
-                Message.raw(" | ").color(Color.lightGray),
-                Message.raw("[ Edit ]")
-                        .color(Colors.HYPIXEL_BUTTON_COLOR)
-                        .link(this.client.getEditPageUrl(key)));
+        RequestThrottle.Ticket ticket = throttle.acquire(context.sender().getUuid());
+        if (ticket.getOutcome() != RequestThrottle.Outcome.ADMITTED) {
+            this.stats.onThrottled(command);
+            return CompletableFuture.completedFuture(null);
+        }
+        return ticket.getDelayNanos() == 0 ? request.get() : queued(ticket, request);
     }
 
-    private Message makeCreateNotice(String key) {
-        return Message.join(
-                Message.raw("Page \"").color(Color.WHITE),
-                Message.raw(key).color(Color.RED),
-                Message.raw("\" doesn't exist yet.").color(Color.WHITE),
-                Message.raw(" "),
-                Message.raw("[ Create ]").color(Colors.HYPIXEL_BUTTON_COLOR).link(client.getEditPageUrl(key))
-        );
+    // Queued, wait for our token without holding a thread.
+    private <T> CompletableFuture<T> queued(RequestThrottle.Ticket ticket, Supplier<CompletableFuture<T>> request) {
+        ExecutorService lookups = this.plugin.getLookupExecutor();
+        Executor queue = lookups != null
+                ? CompletableFuture.delayedExecutor(ticket.getDelayNanos(), TimeUnit.NANOSECONDS, lookups)
+                : CompletableFuture.delayedExecutor(ticket.getDelayNanos(), TimeUnit.NANOSECONDS);
+        return CompletableFuture.runAsync(() -> {
+        }, queue).thenCompose(ignored -> request.get());
     }
 
-    private Message makeQueryChangeNotice(String query) {
-        return Message.join(
-                Message.raw("Query changed to \"").color(Color.lightGray),
-                Message.raw(query).color(Color.CYAN),
-                Message.raw("\".").color(Color.lightGray)
-        );
+    // On a virtual thread if enabled, so nothing of the lookup runs on the command thread.
+    private CompletableFuture<Void> start(Supplier<CompletableFuture<Void>> lookup) {
+        ExecutorService lookups = this.plugin.getLookupExecutor();
+        if (lookups == null) {
+            return lookup.get();
+        }
+        return CompletableFuture.supplyAsync(lookup, lookups).thenCompose(future -> future);
     }
 
-    private Message makeResultList(List<SearchEntry> entries) {
-        Message builder = Message.empty();
-        for (Iterator<SearchEntry> iterator = entries.iterator(); iterator.hasNext(); ) {
-            SearchEntry entry = iterator.next();
-            builder.insert(makeResultRow(entry));
+    static SearchEntry findExactMatch(SearchResult result, String term) {
+        SearchEntry exactMatch = null;
 
-            // newline after row until the last one (server adds the last one automatically)
-            if (iterator.hasNext()) {
-                builder.insert(Message.raw("\n"));
+        for (SearchEntry entry : result.getPages()) {
+            if (entry.getTitle().equalsIgnoreCase(term)) {
+                exactMatch = entry;
+                break;
             }
         }
-        return builder;
-    }
-
-    private String getDisplayName(Item item) {
-        String translationKey = item.getTranslationKey();
-        return Message.translation(translationKey).getAnsiMessage();
+        return exactMatch;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,422 @@
+package org.hytalewiki;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.hypixel.hytale.logger.HytaleLogger;
+import org.hytalewiki.net.CircuitBreaker;
+import org.hytalewiki.net.RetryPolicy;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.cache.CacheSettings;
+import org.hytalewiki.net.cache.MappedResponseStore;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+// Plugin settings, stored as config.json in the plugin data directory.
+public class WikiConfig {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private Cache cache = new Cache();
+
+    private Resilience resilience = new Resilience();
+
+    private Throttle throttle = new Throttle();
+
+    private Transport transport = new Transport();
+
+    private Batching batching = new Batching();
+
+    private Prefetch prefetch = new Prefetch();
+
+    private Search search = new Search();
+
+    private Sync sync = new Sync();
+
+    private Shared shared = new Shared();
+
+    private Warm warm = new Warm();
+
+    private Completion completion = new Completion();
+
+    private Audit audit = new Audit();
+
+    public WikiConfig() {
+        // gson
+    }
+
+    public static class Cache {
+        private boolean enabled = true;
+        private int maximumSize = 1024;
+        private long maximumWeight = 16384;
+        private long positiveTtlSeconds = 600;
+        private long negativeTtlSeconds = 60;
+
+        public Cache() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public CacheSettings toSettings() {
+            return CacheSettings.create()
+                    .maximumSize(maximumSize)
+                    .maximumWeight(maximumWeight)
+                    .positiveTtl(Duration.ofSeconds(positiveTtlSeconds))
+                    .negativeTtl(Duration.ofSeconds(negativeTtlSeconds));
+        }
+    }
+
+    public static class Resilience {
+        private long requestTimeoutSeconds = 10;
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 250;
+        private long maxDelayMillis = 5000;
+        private int failureThreshold = 5;
+        private long openSeconds = 30;
+
+        public Resilience() {
+            // gson
+        }
+
+        public Duration getRequestTimeout() {
+            return Duration.ofSeconds(requestTimeoutSeconds);
+        }
+
+        public RetryPolicy toRetryPolicy() {
+            return RetryPolicy.create()
+                    .maxAttempts(maxAttempts)
+                    .baseDelay(Duration.ofMillis(baseDelayMillis))
+                    .maxDelay(Duration.ofMillis(maxDelayMillis));
+        }
+
+        public CircuitBreaker toCircuitBreaker() {
+            return new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds));
+        }
+    }
+
+    public static class Throttle {
+        private boolean enabled = true;
+        private double globalRequestsPerSecond = 10;
+        private int globalBurst = 20;
+        private int maxQueued = 20;
+        private double senderRequestsPerMinute = 20;
+        private int senderBurst = 5;
+
+        public Throttle() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public RequestThrottle toRequestThrottle() {
+            return new RequestThrottle(globalRequestsPerSecond, globalBurst, maxQueued,
+                    senderRequestsPerMinute / 60, senderBurst);
+        }
+    }
+
+    public static class Transport {
+        private boolean http2 = false;
+        private boolean warmUp = true;
+        private long keepAliveSeconds = 0;
+        private boolean virtualThreads = false;
+
+        public Transport() {
+            // gson
+        }
+
+        public HttpClient.Version getVersion() {
+            return http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+        }
+
+        public boolean isWarmUp() {
+            return warmUp;
+        }
+
+        // Zero disables keep-alive requests.
+        public Duration getKeepAlive() {
+            return Duration.ofSeconds(keepAliveSeconds);
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+    }
+
+    public static class Batching {
+        private boolean enabled = false;
+        private long windowMillis = 10;
+        private int maxTitles = 50;
+
+        public Batching() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getWindow() {
+            return Duration.ofMillis(windowMillis);
+        }
+
+        public int getMaxTitles() {
+            return maxTitles;
+        }
+    }
+
+    public static class Prefetch {
+        private boolean enabled = false;
+        private int maxConcurrent = 2;
+        private int maxQueued = 32;
+        private long slowMillis = 2000;
+        private long pauseSeconds = 60;
+
+        public Prefetch() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public HotbarPrefetcher toPrefetcher(WikiClient client, RequestThrottle throttle, Executor executor) {
+            return new HotbarPrefetcher(client, throttle, executor, maxConcurrent, maxQueued,
+                    Duration.ofMillis(slowMillis), Duration.ofSeconds(pauseSeconds));
+        }
+    }
+
+    public static class Search {
+        private boolean local = false;
+        private String snapshot = "search-snapshot.jsonl";
+        private String index = "search-index.bin";
+
+        public Search() {
+            // gson
+        }
+
+        public boolean isLocal() {
+            return local;
+        }
+
+        // Relative to the plugin data directory.
+        public String getSnapshot() {
+            return snapshot;
+        }
+
+        public String getIndex() {
+            return index;
+        }
+    }
+
+    public static class Sync {
+        private boolean enabled = false;
+        private long intervalSeconds = 60;
+        private int limit = 100;
+
+        public Sync() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getInterval() {
+            return Duration.ofSeconds(Math.max(1, intervalSeconds));
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+    }
+
+    public static class Shared {
+        private boolean enabled = false;
+        private String file = "";
+        private int sizeMegabytes = 64;
+        private int slots = 16384;
+
+        public Shared() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        // Every server on the host that should share the cache must use the same file, by default one in
+        // the system temp directory.
+        public Path getFile() {
+            return file.isBlank() ? Path.of(System.getProperty("java.io.tmpdir"), "hytalewiki-cache.bin") : Path.of(file);
+        }
+
+        public MappedResponseStore open() throws IOException {
+            return MappedResponseStore.open(getFile(), Math.clamp(sizeMegabytes, 1, 1024) << 20, slots);
+        }
+    }
+
+    public static class Warm {
+        private boolean enabled = false;
+        private String file = "warm-cache.bin";
+        private int maxEntries = 512;
+        private long maxStaleHours = 24;
+
+        public Warm() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        // Relative to the plugin data directory.
+        public String getFile() {
+            return file;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public Duration getMaxStale() {
+            return Duration.ofHours(maxStaleHours);
+        }
+    }
+
+    public static class Completion {
+        private boolean enabled = false;
+        private long refreshMinutes = 60;
+        private int maxTitles = 20000;
+        private int maxSuggestions = 10;
+        private int maxEditDistance = 2;
+
+        public Completion() {
+            // gson
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getRefreshInterval() {
+            return Duration.ofMinutes(Math.max(1, refreshMinutes));
+        }
+
+        public TitleCompleter toCompleter(WikiClient client, RequestThrottle throttle, Supplier<Collection<String>> localTitles) {
+            return new TitleCompleter(client, throttle, localTitles, maxTitles, maxSuggestions, maxEditDistance);
+        }
+    }
+
+    public static class Audit {
+        private int batchSize = 50;
+        private int maxConcurrent = 4;
+        private String directory = "audits";
+
+        public Audit() {
+            // gson
+        }
+
+        // Relative to the plugin data directory.
+        public String getDirectory() {
+            return directory;
+        }
+
+        public CoverageAudit toAudit(WikiClient client, RequestThrottle throttle) {
+            return new CoverageAudit(client, throttle, batchSize, maxConcurrent);
+        }
+    }
+
+    // Read the config, writing out the defaults if there is none yet.
+    public static WikiConfig load(Path file) {
+        WikiConfig config = null;
+
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                config = GSON.fromJson(reader, WikiConfig.class);
+            } catch (IOException | JsonParseException e) {
+                LOGGER.atWarning().withCause(e).log("Failed to read " + file + ", using defaults");
+                return new WikiConfig();
+            }
+        }
+
+        if (config == null) {
+            config = new WikiConfig();
+        }
+
+        // Rewrite so options added in newer versions show up with their defaults.
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                GSON.toJson(config, writer);
+            }
+        } catch (IOException e) {
+            LOGGER.atWarning().withCause(e).log("Failed to write " + file);
+        }
+        return config;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Resilience getResilience() {
+        return resilience;
+    }
+
+    public Throttle getThrottle() {
+        return throttle;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public Batching getBatching() {
+        return batching;
+    }
+
+    public Prefetch getPrefetch() {
+        return prefetch;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public Sync getSync() {
+        return sync;
+    }
+
+    public Shared getShared() {
+        return shared;
+    }
+
+    public Warm getWarm() {
+        return warm;
+    }
+
+    public Completion getCompletion() {
+        return completion;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+}
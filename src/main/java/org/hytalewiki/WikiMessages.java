@@ -0,0 +1,245 @@
+package org.hytalewiki;
+
+import com.hypixel.hytale.server.core.Message;
+import org.hytalewiki.net.EndpointStats;
+import org.hytalewiki.net.LatencyHistogram;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.response.SearchEntry;
+
+import java.awt.*;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Builds the chat messages the wiki command sends.
+// Result rows and create notices only depend on a page's title and key, so the most recently used ones
+// are kept and shared between commands. Shared messages must only be inserted into other messages,
+// never changed themselves. They are dropped when the client drops its cached data for the page.
+public class WikiMessages implements WikiClient.InvalidationListener {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 512;
+
+    private static final Message NEWLINE = Message.raw("\n");
+
+    private final WikiClient client;
+
+    private final Fragments resultRows;
+    private final Fragments createNotices;
+
+    public WikiMessages(WikiClient client) {
+        this(client, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public WikiMessages(WikiClient client, int maximumSize) {
+        this.client = client;
+        this.resultRows = new Fragments(maximumSize);
+        this.createNotices = new Fragments(maximumSize);
+    }
+
+    // Rendered messages by page key, each remembering the title it was rendered for.
+    private static class Fragments {
+        private final int maximumSize;
+
+        // Access ordered, the eldest entry is the least recently used one.
+        private final LinkedHashMap<String, Fragment> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Fragments(int maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        synchronized Message get(String key, String title) {
+            Fragment fragment = entries.get(key);
+            return fragment != null && Objects.equals(fragment.title, title) ? fragment.message : null;
+        }
+
+        synchronized void put(String key, String title, Message message) {
+            entries.put(key, new Fragment(title, message));
+            if (entries.size() > maximumSize) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+
+        // Keys may be written with spaces or underscores.
+        synchronized void invalidate(String key) {
+            String normalized = normalize(key);
+            entries.keySet().removeIf(candidate -> normalize(candidate).equals(normalized));
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private static String normalize(String key) {
+            return key.replace(' ', '_');
+        }
+    }
+
+    private record Fragment(String title, Message message) {
+    }
+
+    @Override
+    public void invalidated(String pageKey) {
+        resultRows.invalidate(pageKey);
+        createNotices.invalidate(pageKey);
+    }
+
+    @Override
+    public void invalidatedAll() {
+        resultRows.clear();
+        createNotices.clear();
+    }
+
+    public int getCachedCount() {
+        return resultRows.size() + createNotices.size();
+    }
+
+    public Message makeHeader(String title) {
+        return Message.raw("== ").color(Colors.WIKI_SECTION_COLOR)
+                .insert(Message.raw(title).color(Color.WHITE).bold(true))
+                .insert(Message.raw(" ==\n").color(Colors.WIKI_SECTION_COLOR));
+    }
+
+    public Message makeResultRow(SearchEntry entry) {
+        return makeResultRow(entry.getTitle(), entry.getKey());
+    }
+
+    // Shared, see above.
+    public Message makeResultRow(String title, String key) {
+        Message row = resultRows.get(key, title);
+        if (row == null) {
+            row = renderResultRow(title, key);
+            resultRows.put(key, title, row);
+        }
+        return row;
+    }
+
+    private Message renderResultRow(String title, String key) {
+        return Message.join(Message.raw(title).color(Colors.HYPIXEL_TEXT_COLOR),
+                Message.raw("     "),
+                Message.raw("[ View ]")
+                        .color(Colors.HYPIXEL_BUTTON_COLOR)
+                        .link(this.client.getPageUrl(key)),
+                Message.raw(" | ").color(Color.lightGray),
+                Message.raw("[ Edit ]")
+                        .color(Colors.HYPIXEL_BUTTON_COLOR)
+                        .link(this.client.getEditPageUrl(key)));
+    }
+
+    // Shared, see above.
+    public Message makeCreateNotice(String key) {
+        Message notice = createNotices.get(key, null);
+        if (notice == null) {
+            notice = renderCreateNotice(key);
+            createNotices.put(key, null, notice);
+        }
+        return notice;
+    }
+
+    private Message renderCreateNotice(String key) {
+        return Message.join(
+                Message.raw("Page \"").color(Color.WHITE),
+                Message.raw(key).color(Color.RED),
+                Message.raw("\" doesn't exist yet.").color(Color.WHITE),
+                Message.raw(" "),
+                Message.raw("[ Create ]").color(Colors.HYPIXEL_BUTTON_COLOR).link(client.getEditPageUrl(key))
+        );
+    }
+
+    public Message makeThrottledNotice(String reason, RequestThrottle.Ticket ticket) {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(ticket.getDelayNanos() + 999_999_999L));
+        return Message.join(
+                Message.raw(reason).color(Color.RED),
+                Message.raw(" Try again in " + seconds + "s.").color(Color.lightGray)
+        );
+    }
+
+    public Message makeEndpointStatsRow(EndpointStats.Snapshot stats) {
+        LatencyHistogram.Snapshot latency = stats.latency();
+        return Message.join(
+                Message.raw(stats.endpoint().getName()).color(Colors.HYPIXEL_TEXT_COLOR),
+                Message.raw(" " + stats.requests() + " req"
+                        + ", p50 " + formatMillis(latency.p50())
+                        + " p99 " + formatMillis(latency.p99())
+                        + " max " + formatMillis(latency.max())).color(Color.WHITE),
+                Message.raw(", 2xx " + stats.status(2)
+                        + " 4xx " + stats.status(4)
+                        + " 5xx " + stats.status(5)
+                        + " failed " + stats.failures()
+                        + ", " + formatBytes(stats.bytesReceived())
+                        + ", parse p99 " + formatMillis(stats.parseTime().p99())
+                        + ", cache " + stats.cacheHits() + "/" + (stats.cacheHits() + stats.cacheMisses())
+                        + ", in flight " + stats.inFlight()).color(Color.lightGray)
+        );
+    }
+
+    public Message makeCommandStatsRow(CommandStats.Snapshot stats) {
+        return Message.join(
+                Message.raw("/wiki " + stats.command()).color(Colors.HYPIXEL_TEXT_COLOR),
+                Message.raw(" " + stats.invocations() + " runs").color(Color.WHITE),
+                Message.raw(", " + stats.notFound() + " not found"
+                        + ", " + stats.throttled() + " throttled"
+                        + ", " + stats.failures() + " failed").color(Color.lightGray)
+        );
+    }
+
+    public Message makeAuditProgress(CoverageAudit.Progress progress) {
+        return Message.raw("Checked " + progress.checked() + " of " + progress.total() + " titles, "
+                + progress.missing() + " without a page.").color(Color.lightGray);
+    }
+
+    public Message makeAuditSummary(CoverageAudit.Report report) {
+        return Message.join(
+                Message.raw(report.rows().size() + " items").color(Colors.HYPIXEL_TEXT_COLOR),
+                Message.raw(", " + report.count(CoverageAudit.Status.PRESENT) + " with a page, "
+                        + report.count(CoverageAudit.Status.REDIRECTED) + " redirected, ").color(Color.WHITE),
+                Message.raw(report.count(CoverageAudit.Status.MISSING) + " missing").color(Color.RED),
+                Message.raw(", " + report.count(CoverageAudit.Status.FAILED) + " failed, "
+                        + report.titles() + " titles checked in "
+                        + String.format(Locale.ROOT, "%.1fs", report.duration().toMillis() / 1000.0)).color(Color.lightGray)
+        );
+    }
+
+    private static String formatMillis(Duration duration) {
+        return String.format(Locale.ROOT, "%.1fms", duration.toNanos() / 1_000_000.0);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    public Message makeQueryChangeNotice(String query) {
+        return Message.join(
+                Message.raw("Query changed to \"").color(Color.lightGray),
+                Message.raw(query).color(Color.CYAN),
+                Message.raw("\".").color(Color.lightGray)
+        );
+    }
+
+    public Message makeResultList(List<SearchEntry> entries) {
+        Message builder = Message.empty();
+        for (Iterator<SearchEntry> iterator = entries.iterator(); iterator.hasNext(); ) {
+            SearchEntry entry = iterator.next();
+            builder.insert(makeResultRow(entry));
+
+            // newline after row until the last one (server adds the last one automatically)
+            if (iterator.hasNext()) {
+                builder.insert(NEWLINE);
+            }
+        }
+        return builder;
+    }
+}
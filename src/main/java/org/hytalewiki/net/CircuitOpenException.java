@@ -0,0 +1,10 @@
+package org.hytalewiki.net;
+
+// Thrown without sending anything while the circuit breaker is open.
+public class CircuitOpenException extends RequestException {
+
+    public CircuitOpenException(String message) {
+        // No stack trace, these are expected and can come in bursts.
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,146 @@
+package org.hytalewiki.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+// Compression negotiation for WikiClient. HttpClient doesn't decompress on its own,
+// so responses are wrapped in a decompressing stream that inflates as it is read.
+final class ContentEncoding {
+
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private ContentEncoding() {
+    }
+
+    static InputStream decode(HttpHeaders headers, InputStream body) {
+        String encoding = headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+
+        return switch (encoding) {
+            // GZIPInputStream reads the header in its constructor, which would block on the body.
+            // Defer that to the first read so it happens on whichever thread consumes the stream.
+            case "gzip", "x-gzip" -> new DeferredInputStream(body, () -> new GZIPInputStream(body, 8192));
+            case "deflate" -> new InflaterInputStream(body);
+            default -> body;
+        };
+    }
+
+    private interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private static class DeferredInputStream extends FilterInputStream {
+        private final Opener opener;
+        private boolean opened;
+
+        DeferredInputStream(InputStream raw, Opener opener) {
+            super(raw);
+            this.opener = opener;
+        }
+
+        private InputStream delegate() throws IOException {
+            if (!opened) {
+                opened = true;
+                this.in = opener.open();
+            }
+            return this.in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return delegate().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return opened ? this.in.available() : 0;
+        }
+    }
+
+    // Reads at most maxBytes, then reports the end of the stream. Closing it closes the response body,
+    // which cancels whatever of the download is left.
+    static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+        private boolean checked;
+        private boolean truncated;
+
+        BoundedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return atLimit();
+            }
+            int read = in.read();
+            if (read >= 0) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return atLimit();
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        // The end, but only cut off if there was more to read. A body of exactly maxBytes isn't.
+        private int atLimit() throws IOException {
+            if (!checked) {
+                checked = true;
+                truncated = in.read() >= 0;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    // Decoding stream over a body that has already been received in full.
+    static InputStream decode(HttpHeaders headers, byte[] body) {
+        InputStream stream = new ByteArrayInputStream(body);
+        // Nothing to inflate, and an empty gzip stream would fail on the missing header.
+        return body.length == 0 ? stream : decode(headers, stream);
+    }
+}
@@ -0,0 +1,21 @@
+package org.hytalewiki.net;
+
+// The kinds of request WikiClient sends, for per endpoint stats.
+public enum Endpoint {
+    PAGE("page"),
+    SEARCH("search"),
+    SEARCH_TITLE("searchTitle"),
+    HTML("html"),
+    RECENT_CHANGES("recentChanges"),
+    ALL_PAGES("allPages");
+
+    private final String name;
+
+    Endpoint(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
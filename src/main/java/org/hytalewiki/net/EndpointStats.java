@@ -0,0 +1,99 @@
+package org.hytalewiki.net;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and latencies for one endpoint of a WikiClient. Every attempt counts as a request, so retries
+// show up here, while cache hits and misses count lookups.
+public class EndpointStats {
+
+    private final Endpoint endpoint;
+
+    private final LongAdder requests = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // 1xx to 5xx by leading digit, index 0 counts requests that got no response at all.
+    private final LongAdder[] statuses = new LongAdder[6];
+
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram parseTime = new LatencyHistogram();
+
+    EndpointStats(Endpoint endpoint) {
+        this.endpoint = endpoint;
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = new LongAdder();
+        }
+    }
+
+    // Returns the start time to pass to onResponse or onFailure.
+    long onSend() {
+        requests.increment();
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    // bytes is what came over the wire, before decompression.
+    void onResponse(long start, int status, long bytes) {
+        latency.record(System.nanoTime() - start);
+        inFlight.decrementAndGet();
+
+        int bucket = status / 100;
+        statuses[bucket >= 1 && bucket <= 5 ? bucket : 0].increment();
+        bytesReceived.add(bytes);
+    }
+
+    void onFailure(long start) {
+        latency.record(System.nanoTime() - start);
+        inFlight.decrementAndGet();
+        statuses[0].increment();
+    }
+
+    void onParsed(long nanos) {
+        parseTime.record(nanos);
+    }
+
+    void onCacheHit() {
+        cacheHits.increment();
+    }
+
+    void onCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public Snapshot snapshot() {
+        long[] statusCounts = new long[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            statusCounts[i] = statuses[i].sum();
+        }
+
+        return new Snapshot(endpoint, requests.sum(), inFlight.get(), statusCounts, bytesReceived.sum(),
+                cacheHits.sum(), cacheMisses.sum(), latency.snapshot(), parseTime.snapshot());
+    }
+
+    public record Snapshot(Endpoint endpoint, long requests, int inFlight, long[] statuses, long bytesReceived,
+                           long cacheHits, long cacheMisses, LatencyHistogram.Snapshot latency,
+                           LatencyHistogram.Snapshot parseTime) {
+
+        // Requests answered with the given class of status, 2 for 2xx and so on.
+        public long status(int leadingDigit) {
+            return statuses[leadingDigit];
+        }
+
+        public long failures() {
+            return statuses[0];
+        }
+
+        public double cacheHitRatio() {
+            long lookups = cacheHits + cacheMisses;
+            return lookups == 0 ? 0 : (double) cacheHits / lookups;
+        }
+    }
+}
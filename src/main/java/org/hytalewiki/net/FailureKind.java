@@ -0,0 +1,79 @@
+package org.hytalewiki.net;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+
+// Why a request failed, which decides whether it is retried and whether it counts against the circuit breaker.
+public enum FailureKind {
+    TIMEOUT(true, true),
+    CONNECT(true, true),
+    // The connection broke mid-exchange, reset or closed early, the next one will likely do.
+    IO(true, true),
+    // 429
+    THROTTLED(true, true),
+    // 5xx
+    SERVER(true, true),
+    // Other unexpected status codes, the wiki is up but won't change its mind.
+    CLIENT(false, false),
+    // Body wasn't what we expected, usually an HTML error page from a proxy.
+    PARSE(false, true),
+    // Rejected locally by an open circuit breaker.
+    REJECTED(false, false),
+    OTHER(false, true);
+
+    private final boolean retryable;
+    private final boolean breakerFailure;
+
+    FailureKind(boolean retryable, boolean breakerFailure) {
+        this.retryable = retryable;
+        this.breakerFailure = breakerFailure;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public boolean isBreakerFailure() {
+        return breakerFailure;
+    }
+
+    public static FailureKind classify(Throwable throwable) {
+        // RequestException wraps the actual cause.
+        while (throwable instanceof RequestException && !(throwable instanceof ResponseException)
+                && !(throwable instanceof CircuitOpenException) && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+
+        if (throwable instanceof CircuitOpenException) {
+            return REJECTED;
+        }
+        if (throwable instanceof ResponseException response) {
+            int status = response.getStatusCode();
+            if (status == 429) {
+                return THROTTLED;
+            }
+            return status >= 500 ? SERVER : CLIENT;
+        }
+        if (throwable instanceof HttpConnectTimeoutException || throwable instanceof ConnectException
+                || throwable instanceof UnresolvedAddressException) {
+            return CONNECT;
+        }
+        if (throwable instanceof HttpTimeoutException) {
+            return TIMEOUT;
+        }
+        // MalformedJsonException is an IOException, but no less a parse failure.
+        if (throwable instanceof JsonParseException || throwable instanceof MalformedJsonException) {
+            return PARSE;
+        }
+        if (throwable instanceof IOException) {
+            return IO;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,104 @@
+package org.hytalewiki.net;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Collects lookups arriving within a short window, or until a batch is full, and resolves them with one
+// call to the loader. Each caller gets its own future, keys missing from the loader's result resolve to null.
+public class MicroBatcher<K, V> {
+
+    private final Function<List<K>, CompletableFuture<Map<K, V>>> loader;
+
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private final Object lock = new Object();
+
+    // Guarded by lock. Insertion ordered so batches go out in the order they were asked for.
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+
+    // Guarded by lock. Lets a window timer tell whether its batch was already flushed for being full.
+    private long batch;
+
+    public MicroBatcher(Function<List<K>, CompletableFuture<Map<K, V>>> loader, Duration window, int maxBatchSize) {
+        this.loader = loader;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    public CompletableFuture<V> submit(K key) {
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> future;
+
+        synchronized (lock) {
+            future = pending.get(key);
+            if (future != null) {
+                return future.copy();
+            }
+
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+
+            if (pending.size() >= maxBatchSize) {
+                full = takeBatch();
+            } else if (pending.size() == 1) {
+                long scheduled = batch;
+                CompletableFuture.delayedExecutor(windowNanos, TimeUnit.NANOSECONDS).execute(() -> flush(scheduled));
+            }
+        }
+
+        if (full != null) {
+            load(full);
+        }
+        return future.copy();
+    }
+
+    private void flush(long scheduled) {
+        Map<K, CompletableFuture<V>> taken;
+        synchronized (lock) {
+            if (scheduled != batch || pending.isEmpty()) {
+                return;
+            }
+            taken = takeBatch();
+        }
+        load(taken);
+    }
+
+    // Caller holds the lock.
+    private Map<K, CompletableFuture<V>> takeBatch() {
+        Map<K, CompletableFuture<V>> taken = pending;
+        pending = new LinkedHashMap<>();
+        batch++;
+        return taken;
+    }
+
+    private void load(Map<K, CompletableFuture<V>> taken) {
+        CompletableFuture<Map<K, V>> result;
+        try {
+            result = loader.apply(new ArrayList<>(taken.keySet()));
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((values, throwable) -> taken.forEach((key, future) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(values.get(key));
+            }
+        }));
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+}
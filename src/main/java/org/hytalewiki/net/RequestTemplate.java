@@ -0,0 +1,201 @@
+package org.hytalewiki.net;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A request to one endpoint that only varies in a path segment and the values of a fixed set of
+// parameters. Produces the same URIs and keys as PathBuilder without its map, concatenation and
+// re-encoding: values are encoded into a reused per-thread buffer, and the results for recently
+// used values are kept, so lookups of hot titles don't build anything at all.
+public final class RequestTemplate {
+
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // Where a request goes and the cache key PathBuilder.toKey() would give it.
+    public record Target(URI uri, String key) {
+    }
+
+    private final String prefix;
+    private final boolean segment;
+    private final String suffix;
+
+    // In URL order, and the order PathBuilder.toKey() sorts them in.
+    private final String[] params;
+    private final int[] keyOrder;
+
+    private final String[] headers;
+
+    private final int cacheSize;
+
+    // Access ordered, keyed by the first variable. The other variables are compared on lookup.
+    private final LinkedHashMap<String, Expansion> expansions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private record Expansion(String second, Target target) {
+    }
+
+    private RequestTemplate(String prefix, boolean segment, String suffix, String[] params, String[] headers, int cacheSize) {
+        if (params.length > (segment ? 1 : 2)) {
+            throw new IllegalArgumentException("At most two variables are supported");
+        }
+
+        this.prefix = prefix;
+        this.segment = segment;
+        this.suffix = suffix;
+        this.params = params.clone();
+        this.headers = headers.clone();
+        this.cacheSize = cacheSize;
+
+        Integer[] order = new Integer[params.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> params[a].compareTo(params[b]));
+        this.keyOrder = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    // Requests to prefix + segment + suffix, with spaces in the segment turned into underscores.
+    public static RequestTemplate ofPath(String prefix, String suffix, String... headers) {
+        return new RequestTemplate(prefix, true, suffix, new String[0], headers, DEFAULT_CACHE_SIZE);
+    }
+
+    // Requests to path with values for these parameters, in this order.
+    public static RequestTemplate ofQuery(String path, String[] params, String... headers) {
+        return new RequestTemplate(path, false, "", params, headers, DEFAULT_CACHE_SIZE);
+    }
+
+    public Target expand(String first) {
+        return expand(first, null);
+    }
+
+    // The first variable is the path segment if there is one, otherwise the first parameter.
+    public Target expand(String first, String second) {
+        lock.lock();
+        try {
+            Expansion expansion = expansions.get(first);
+            if (expansion != null && (expansion.second == null ? second == null : expansion.second.equals(second))) {
+                return expansion.target;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Target target = encode(first, second);
+
+        lock.lock();
+        try {
+            expansions.put(first, new Expansion(second, target));
+            if (expansions.size() > cacheSize) {
+                Map.Entry<String, Expansion> eldest = expansions.entrySet().iterator().next();
+                expansions.remove(eldest.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return target;
+    }
+
+    private Target encode(String first, String second) {
+        String[] values = segment ? new String[]{second} : new String[]{first, second};
+
+        StringBuilder builder = BUFFER.get();
+        builder.setLength(0);
+
+        builder.append(prefix);
+        if (segment) {
+            appendSegment(builder, first);
+        }
+        builder.append(suffix);
+        int pathLength = builder.length();
+
+        for (int i = 0; i < params.length; i++) {
+            builder.append(i == 0 ? '?' : '&').append(params[i]).append('=');
+            appendEncoded(builder, values[i]);
+        }
+        URI uri = URI.create(builder.toString());
+
+        if (params.length < 2) {
+            // Nothing to reorder, the key is the URI.
+            return new Target(uri, uri.toString());
+        }
+
+        builder.setLength(pathLength);
+        for (int i = 0; i < keyOrder.length; i++) {
+            builder.append(i == 0 ? '?' : '&').append(params[keyOrder[i]]).append('=');
+            appendEncoded(builder, values[keyOrder[i]]);
+        }
+        return new Target(uri, builder.toString());
+    }
+
+    // Like the timeout and headers of WikiClient.jsonRequest() and requestBase(), fixed per template.
+    public HttpRequest request(Target target, Duration timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target.uri())
+                .timeout(timeout)
+                .GET();
+        if (headers.length > 0) {
+            builder.headers(headers);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return expansions.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void appendSegment(StringBuilder builder, String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            builder.append(c == ' ' ? '_' : c);
+        }
+    }
+
+    // Same output as URLEncoder.encode(value, UTF_8), including '?' for unpaired surrogates.
+    static void appendEncoded(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                builder.append(c);
+            } else if (c == ' ') {
+                builder.append('+');
+            } else if (c < 0x80) {
+                appendByte(builder, c);
+            } else if (c < 0x800) {
+                appendByte(builder, 0xC0 | (c >> 6));
+                appendByte(builder, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(builder, 0xF0 | (codePoint >> 18));
+                appendByte(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                appendByte(builder, '?');
+            } else {
+                appendByte(builder, 0xE0 | (c >> 12));
+                appendByte(builder, 0x80 | ((c >> 6) & 0x3F));
+                appendByte(builder, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static void appendByte(StringBuilder builder, int b) {
+        builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
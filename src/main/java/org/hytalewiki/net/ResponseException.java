@@ -0,0 +1,26 @@
+package org.hytalewiki.net;
+
+import java.time.Duration;
+
+// The wiki answered, but not with something we can use.
+public class ResponseException extends RequestException {
+
+    private final int statusCode;
+
+    // Null unless the server sent a usable Retry-After header.
+    private final Duration retryAfter;
+
+    public ResponseException(int statusCode, Duration retryAfter, String message) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,69 @@
+package org.hytalewiki.net;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+// How often and how long to wait before retrying an idempotent request.
+public class RetryPolicy {
+
+    private int maxAttempts = 3;
+
+    private Duration baseDelay = Duration.ofMillis(250);
+
+    private Duration maxDelay = Duration.ofSeconds(5);
+
+    RetryPolicy() {
+    }
+
+    public static RetryPolicy create() {
+        return new RetryPolicy();
+    }
+
+    public static RetryPolicy none() {
+        return new RetryPolicy().maxAttempts(1);
+    }
+
+    // Total attempts including the first one.
+    public RetryPolicy maxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        return this;
+    }
+
+    public RetryPolicy baseDelay(Duration baseDelay) {
+        this.baseDelay = baseDelay;
+        return this;
+    }
+
+    // Upper bound for a single wait, a longer Retry-After gives up instead.
+    public RetryPolicy maxDelay(Duration maxDelay) {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    // Delay before the given retry (1 for the first one), or null if we should give up.
+    public Duration delayFor(int retry, Duration retryAfter) {
+        if (retry >= maxAttempts) {
+            return null;
+        }
+
+        if (retryAfter != null) {
+            return retryAfter.compareTo(maxDelay) > 0 ? null : retryAfter;
+        }
+
+        // Full jitter: uniformly random between zero and the exponential backoff.
+        long ceiling = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(retry - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getBaseDelay() {
+        return baseDelay;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+}
@@ -0,0 +1,55 @@
+package org.hytalewiki.net;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Coalesces concurrent calls with the same key into one in-flight call.
+// Everyone asking while the call runs gets its result, the next caller after it completes starts a new one.
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder shared = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) inFlight.putIfAbsent(key, created);
+
+        if (existing != null) {
+            shared.increment();
+            // Hand out copies so one caller cancelling or completing its future doesn't affect the others.
+            return existing.copy();
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((value, throwable) -> {
+            // Remove first so callers that see the result complete can't join a finished flight.
+            inFlight.remove(key, created);
+
+            if (throwable != null) {
+                created.completeExceptionally(throwable);
+            } else {
+                created.complete(value);
+            }
+        });
+        return created.copy();
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    // Number of calls that joined an existing flight instead of starting their own.
+    public long getSharedCount() {
+        return shared.sum();
+    }
+}
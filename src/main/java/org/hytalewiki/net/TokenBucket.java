@@ -0,0 +1,83 @@
+package org.hytalewiki.net;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Lock-free token bucket, implemented as a generic cell rate algorithm: the only state is the
+// theoretical arrival time of the next request, updated with a single compare-and-set.
+public class TokenBucket {
+
+    // Time to refill one token.
+    private final long intervalNanos;
+
+    // How far ahead of schedule a caller may be, which is what allows bursts.
+    private final long toleranceNanos;
+
+    private final LongSupplier clock;
+
+    private final AtomicLong arrival;
+
+    public TokenBucket(double tokensPerSecond, int burst) {
+        this(tokensPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double tokensPerSecond, int burst, LongSupplier clock) {
+        this.intervalNanos = Math.max(1, (long) (Duration.ofSeconds(1).toNanos() / tokensPerSecond));
+        this.toleranceNanos = this.intervalNanos * (Math.max(1, burst) - 1);
+        this.clock = clock;
+        this.arrival = new AtomicLong(clock.getAsLong());
+    }
+
+    // Take a token. Returns 0 if one is available now, the time in nanos to wait for one if that is
+    // at most maxWaitNanos (the token is reserved either way), or -1 without taking anything.
+    public long reserve(long maxWaitNanos) {
+        long now = clock.getAsLong();
+        while (true) {
+            long current = arrival.get();
+            long base = Math.max(current, now);
+            long wait = base - now - toleranceNanos;
+
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+
+            if (arrival.compareAndSet(current, base + intervalNanos)) {
+                return Math.max(0, wait);
+            }
+        }
+    }
+
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    // Take a token only if at least spare more would still be available right after.
+    public boolean tryAcquireLeaving(int spare) {
+        return reserve(-intervalNanos * spare) == 0;
+    }
+
+    // Give back a token taken, e.g. when the request it was for wasn't sent after all.
+    public void refund() {
+        while (true) {
+            long current = arrival.get();
+            if (arrival.compareAndSet(current, Math.max(current - intervalNanos, clock.getAsLong()))) {
+                return;
+            }
+        }
+    }
+
+    // Time in nanos until a token is available, 0 if there is one now.
+    public long timeUntilAvailable() {
+        return Math.max(0, arrival.get() - clock.getAsLong() - toleranceNanos);
+    }
+
+    // Whether the bucket has refilled completely, at which point it holds no state worth keeping.
+    public boolean isFull() {
+        return arrival.get() - clock.getAsLong() <= 0;
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+}
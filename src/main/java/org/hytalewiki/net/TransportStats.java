@@ -0,0 +1,65 @@
+package org.hytalewiki.net;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for the HTTP exchanges a WikiClient makes.
+// HttpClient doesn't expose its connection pool, so reuse shows up indirectly: with HTTP/2 every
+// exchange to the wiki shares one connection, with HTTP/1.1 a connection carries one exchange at a
+// time and the pool grows to the peak number of concurrent exchanges.
+public class TransportStats {
+
+    private final LongAdder exchanges = new LongAdder();
+    private final LongAdder http1 = new LongAdder();
+    private final LongAdder http2 = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    void onSend() {
+        exchanges.increment();
+        int current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+    }
+
+    void onResponse(HttpClient.Version version) {
+        inFlight.decrementAndGet();
+        if (version == HttpClient.Version.HTTP_2) {
+            http2.increment();
+        } else {
+            http1.increment();
+        }
+    }
+
+    void onFailure() {
+        inFlight.decrementAndGet();
+        failures.increment();
+    }
+
+    public long getExchanges() {
+        return exchanges.sum();
+    }
+
+    public long getHttp1Responses() {
+        return http1.sum();
+    }
+
+    public long getHttp2Responses() {
+        return http2.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // Upper bound for the number of HTTP/1.1 connections the pool has needed.
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+}
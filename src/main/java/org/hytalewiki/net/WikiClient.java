@@ -1,10 +1,20 @@
 package org.hytalewiki.net;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.hytalewiki.net.cache.CacheSettings;
+import org.hytalewiki.net.cache.ResponseCache;
+import org.hytalewiki.net.cache.ResponseStore;
+import org.hytalewiki.net.cache.SnapshotResponseStore;
+import org.hytalewiki.net.cache.Validators;
+import org.hytalewiki.net.json.ResponseCodec;
+import org.hytalewiki.net.response.AllPages;
 import org.hytalewiki.net.response.PageObject;
+import org.hytalewiki.net.response.PageQueryResult;
+import org.hytalewiki.net.response.RecentChanges;
 import org.hytalewiki.net.response.SearchResult;
+import org.hytalewiki.net.search.SearchIndex;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -15,35 +25,151 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class WikiClient {
 
     private static final Logger log = Logger.getLogger(WikiClient.class.getName());
 
+    // Headers of requestBase() and jsonRequest().
+    private static final String[] BASE_HEADERS = {"Accept-Encoding", ContentEncoding.ACCEPT_ENCODING};
+    private static final String[] JSON_HEADERS = {
+            "Accept-Encoding", ContentEncoding.ACCEPT_ENCODING,
+            "Content-Type", "application/json",
+            "Accept", "application/json"
+    };
+
+    private static final String[] SEARCH_PARAMS = {"q", "limit"};
+
+    private static final String[] LIMIT_PARAMS = new String[101];
+
+    static {
+        for (int i = 0; i < LIMIT_PARAMS.length; i++) {
+            LIMIT_PARAMS[i] = Integer.toString(i);
+        }
+    }
+
+    // The action API's limit on titles per query for clients without apihighlimits.
+    private static final int MAX_QUERY_TITLES = 50;
+
     private final String baseUrl;
 
     private final HttpClient.Builder builder;
 
+    // Null for the HttpClient's default executor.
+    private volatile Executor executor;
+
     private HttpClient client;
 
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final TransportStats transportStats = new TransportStats();
+
+    private final Map<Endpoint, EndpointStats> endpointStats = new EnumMap<>(Endpoint.class);
+
+    private volatile long lastExchange = System.nanoTime();
+
+    // Skips the large content fields by default, see ResponseCodec.
+    private ResponseCodec codec = ResponseCodec.COMPACT;
+    private BodyDecoder<PageObject> pageDecoder = jsonDecoder(PageObject.class, codec);
+    private BodyDecoder<SearchResult> searchDecoder = jsonDecoder(SearchResult.class, codec);
+
+    // Same URIs and headers as buildRestPath() with jsonRequest() or requestBase(), see RequestTemplate.
+    private final RequestTemplate pageTemplate;
+    private final RequestTemplate htmlTemplate;
+    private final RequestTemplate searchTemplate;
+    private final RequestTemplate searchTitleTemplate;
+
+    private Duration requestTimeout = Duration.ofMinutes(2);
+
+    private RetryPolicy retryPolicy = RetryPolicy.create();
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker(5, Duration.ofSeconds(30));
+
+    // Null until caching is enabled.
+    private ResponseCache<PageObject> pageCache;
+    private ResponseCache<SearchResult> searchCache;
+    private ResponseCache<String> htmlCache;
+
+    // Null until batching is enabled.
+    private MicroBatcher<String, PageObject> pageBatcher;
+
+    // Null unless searches are answered locally.
+    private volatile SearchIndex searchIndex;
+
+    private final List<InvalidationListener> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    // Told when cached wiki data is dropped, so anything derived from it can be dropped as well.
+    public interface InvalidationListener {
+        void invalidated(String pageKey);
+
+        void invalidatedAll();
+    }
+
+    // The html of a page as streamed by htmlStream.
+    public static class HtmlReader extends InputStreamReader {
+        private final ContentEncoding.BoundedInputStream body;
+
+        HtmlReader(ContentEncoding.BoundedInputStream body) {
+            super(body, StandardCharsets.UTF_8);
+            this.body = body;
+        }
+
+        // Whether the page was cut off after maxBytes. Only known once the reader reached its end.
+        public boolean isTruncated() {
+            return body.isTruncated();
+        }
+    }
+
     public WikiClient(String baseUrl) {
-        this.baseUrl = baseUrl;
-        this.builder = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .connectTimeout(Duration.ofSeconds(20));
+        this(baseUrl, HttpClient.Version.HTTP_1_1);
+    }
 
-        this.rebuild();
+    // HTTP_2 multiplexes concurrent requests over one connection. The client negotiates it with ALPN
+    // and falls back to HTTP/1.1 on its own if the server doesn't support it.
+    public WikiClient(String baseUrl, HttpClient.Version version) {
+        this(baseUrl, HttpClient.newBuilder()
+                .version(version)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(20)));
     }
 
     public WikiClient(String baseUrl, HttpClient.Builder builder) {
         this.baseUrl = baseUrl;
         this.builder = builder;
 
+        String restPath = buildRestPath("").toString();
+        this.pageTemplate = RequestTemplate.ofPath(restPath + "/page/", "", JSON_HEADERS);
+        this.htmlTemplate = RequestTemplate.ofPath(restPath + "/page/", "/html", BASE_HEADERS);
+        this.searchTemplate = RequestTemplate.ofQuery(restPath + "/search/page", SEARCH_PARAMS, JSON_HEADERS);
+        this.searchTitleTemplate = RequestTemplate.ofQuery(restPath + "/search/title", SEARCH_PARAMS, JSON_HEADERS);
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            this.endpointStats.put(endpoint, new EndpointStats(endpoint));
+        }
+
         this.rebuild();
     }
 
@@ -88,6 +214,19 @@ public class WikiClient {
             return URI.create(toString());
         }
 
+        // Identifies the request independent of parameter order and of spaces vs underscores in the path,
+        // so "Iron Shovel" and "Iron_Shovel" end up with the same key.
+        public String toKey() {
+            StringBuilder builder = new StringBuilder(this.path.replace(" ", "_"));
+            char separator = '?';
+            for (Map.Entry<String, String> entry : new TreeMap<>(params).entrySet()) {
+                builder.append(separator).append(entry.getKey()).append("=")
+                        .append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
+                separator = '&';
+            }
+            return builder.toString();
+        }
+
         @Override
         public String toString() {
             return this.path.replace(" ", "_") + this.buildQuery();
@@ -96,43 +235,89 @@ public class WikiClient {
 
     // Get the raw html for a page.
     public String html(String pageKey) throws RequestException {
-        HttpRequest request = requestBase()
-                .uri(buildRestPath("/page/" + pageKey + "/html")
-                        .toURI())
-                .build();
-
-        try {
-            HttpResponse<String> send = this.client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
-
-            if (send.statusCode() != 200) {
-                throw new RequestException("Request failed: " + send.body());
-            }
-
-            return send.body();
-        } catch (IOException | InterruptedException e) {
-            throw new RequestException(e);
-        }
+        return await(htmlAsync(pageKey));
     }
 
     // Get information about a page.
     public PageObject page(String key) throws RequestException {
-        HttpRequest request = jsonRequest()
-                .uri(buildRestPath("/page/" + key).toURI())
-                .build();
-
-        return sendJsonRequest(request, PageObject.class);
+        return await(pageAsync(key));
     }
 
     // Search for term on the wiki.
     public SearchResult search(String term, int limit) throws RequestException {
-        HttpRequest request = buildSearchRequest(term, limit);
-        return sendJsonRequest(request, SearchResult.class);
+        return await(searchAsync(term, limit));
     }
 
     // Search for title on the wiki.
     public SearchResult searchTitle(String term, int limit) throws RequestException {
-        HttpRequest request = buildSearchTitleRequest(term, limit);
-        return sendJsonRequest(request, SearchResult.class);
+        return await(searchTitleAsync(term, limit));
+    }
+
+    // Get the raw html for a page without holding a thread while the request is in flight.
+    public CompletableFuture<String> htmlAsync(String pageKey) {
+        RequestTemplate.Target target = htmlTemplate.expand(pageKey);
+        return fetch(Endpoint.HTML, htmlCache, target.key(), () -> htmlTemplate.request(target, requestTimeout), HTML_DECODER);
+    }
+
+    // Stream the raw html for a page, decompressed as it is read and cut off after maxBytes of markup,
+    // so large pages are never buffered whole. Completes once the response headers are in.
+    // The reader must be closed, closing it early cancels the rest of the download.
+    public CompletableFuture<HtmlReader> htmlStream(String pageKey, long maxBytes) {
+        HttpRequest request = htmlTemplate.request(htmlTemplate.expand(pageKey), requestTimeout);
+
+        EndpointStats stats = getEndpointStats(Endpoint.HTML);
+
+        return resilient(() -> {
+            long start = stats.onSend();
+            return exchange(request, HttpResponse.BodyHandlers.ofInputStream()).handle((response, throwable) -> {
+                if (throwable != null) {
+                    stats.onFailure(start);
+                    throw new CompletionException(new RequestException(unwrap(throwable)));
+                }
+
+                // Only the time to the headers, the body hasn't been read yet and its size isn't known.
+                stats.onResponse(start, response.statusCode(), 0);
+
+                if (response.statusCode() != 200) {
+                    // Don't bother reading the error page.
+                    closeQuietly(response.body());
+                    throw new CompletionException(statusException(response, "Request failed with status " + response.statusCode()));
+                }
+
+                InputStream body = ContentEncoding.decode(response.headers(), response.body());
+                return new HtmlReader(new ContentEncoding.BoundedInputStream(body, maxBytes));
+            });
+        });
+    }
+
+    // Get information about a page without holding a thread while the request is in flight.
+    public CompletableFuture<PageObject> pageAsync(String key) {
+        RequestTemplate.Target target = pageTemplate.expand(key);
+
+        // The action API separates titles with |, so such keys can't share a batch.
+        if (pageBatcher != null && key.indexOf('|') < 0) {
+            return fetchBatched(target.key(), key);
+        }
+
+        return fetch(Endpoint.PAGE, pageCache, target.key(), () -> pageTemplate.request(target, requestTimeout), pageDecoder);
+    }
+
+    // Search for term on the wiki without holding a thread while the request is in flight.
+    // With a local index, it answers instead, and the wiki is only asked if the index found nothing.
+    public CompletableFuture<SearchResult> searchAsync(String term, int limit) {
+        SearchResult local = searchLocally(term, limit);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+
+        RequestTemplate.Target target = searchTemplate.expand(term, limitParam(limit));
+        return fetch(Endpoint.SEARCH, searchCache, target.key(), () -> searchTemplate.request(target, requestTimeout), searchDecoder);
+    }
+
+    // Search for title on the wiki without holding a thread while the request is in flight.
+    public CompletableFuture<SearchResult> searchTitleAsync(String term, int limit) {
+        RequestTemplate.Target target = searchTitleTemplate.expand(term, limitParam(limit));
+        return fetch(Endpoint.SEARCH_TITLE, searchCache, target.key(), () -> searchTitleTemplate.request(target, requestTimeout), searchDecoder);
     }
 
     public String getPageUrl(String term) {
@@ -145,6 +330,555 @@ public class WikiClient {
                 .toString();
     }
 
+    // Cache page, search and html responses in memory, keyed by request URI.
+    public void enableCache(CacheSettings settings) {
+        enableCache(settings, null);
+    }
+
+    // Like enableCache(settings), and look in the store before asking the wiki, e.g. to share responses
+    // with other server processes. Responses are stored as JSON in the current codec, and html as is.
+    public void enableCache(CacheSettings settings, ResponseStore store) {
+        // Weights are roughly one unit per page object held, or per KiB of html.
+        this.pageCache = new ResponseCache<>(settings, page -> page.getKey() == null, page -> 1,
+                store, jsonSerializer(PageObject.class, codec));
+        this.searchCache = new ResponseCache<>(settings, result -> result.getPages().isEmpty(),
+                result -> 1 + result.getPages().size(), store, jsonSerializer(SearchResult.class, codec));
+        this.htmlCache = new ResponseCache<>(settings, html -> false, html -> 1 + html.length() / 1024,
+                store, HTML_SERIALIZER);
+    }
+
+    // Write the most recently used page and search responses, up to maxEntries of each, to a snapshot
+    // that a SnapshotResponseStore can restore the cache from after a restart. Returns the number written.
+    public int saveSnapshot(Path file, int maxEntries) throws IOException {
+        if (pageCache == null) {
+            return 0;
+        }
+        List<ResponseCache.Exported> entries = new ArrayList<>(pageCache.exportHottest(maxEntries));
+        entries.addAll(searchCache.exportHottest(maxEntries));
+        return SnapshotResponseStore.write(file, entries);
+    }
+
+    // Look up pages that are asked for within window of each other with a single action=query request
+    // of up to maxTitles titles, instead of one REST request each.
+    public void enableBatching(Duration window, int maxTitles) {
+        this.pageBatcher = new MicroBatcher<>(this::queryPages, window, Math.min(maxTitles, MAX_QUERY_TITLES));
+    }
+
+    public void disableBatching() {
+        this.pageBatcher = null;
+    }
+
+    public MicroBatcher<String, PageObject> getPageBatcher() {
+        return pageBatcher;
+    }
+
+    // Get information about several pages with one request. Pages that don't exist have no key.
+    // Counted as a single page request in the endpoint stats.
+    public CompletableFuture<Map<String, PageObject>> queryPages(List<String> titles) {
+        HttpRequest request = jsonRequest()
+                .uri(buildQueryPath(titles).toURI())
+                .build();
+
+        return resilient(() -> send(getEndpointStats(Endpoint.PAGE), request, jsonDecoder(PageQueryResult.class, this.codec))).thenApply(fetched -> {
+            PageQueryResult result = fetched.getValue();
+            if (result.getError() != null) {
+                throw new CompletionException(new RequestException("Query failed: " + result.getError()));
+            }
+
+            Map<String, PageObject> pages = new HashMap<>();
+            for (String title : titles) {
+                pages.put(title, result.resolve(title));
+            }
+            return pages;
+        });
+    }
+
+    // Changes to pages, oldest first, starting at a continuation token from a previous call, or at since if
+    // there is none. Edits, page creations and log entries (moves, deletions, ...) only. Never cached.
+    public CompletableFuture<RecentChanges> recentChangesAsync(String continueToken, Instant since, int limit) {
+        PathBuilder path = buildPath("/api.php")
+                .param("action", "query")
+                .param("format", "json")
+                .param("formatversion", "2")
+                .param("list", "recentchanges")
+                .param("rcdir", "newer")
+                .param("rcprop", "title|ids|timestamp|loginfo")
+                .param("rctype", "edit|new|log")
+                .param("rclimit", limitParam(limit));
+        if (continueToken != null) {
+            path.param("rccontinue", continueToken);
+        } else {
+            path.param("rcstart", DateTimeFormatter.ISO_INSTANT.format(since.truncatedTo(ChronoUnit.SECONDS)));
+        }
+        HttpRequest request = jsonRequest()
+                .uri(path.toURI())
+                .build();
+
+        return resilient(() -> send(getEndpointStats(Endpoint.RECENT_CHANGES), request, jsonDecoder(RecentChanges.class, this.codec))).thenApply(fetched -> {
+            RecentChanges result = fetched.getValue();
+            if (result.getError() != null) {
+                throw new CompletionException(new RequestException("Query failed: " + result.getError()));
+            }
+            return result;
+        });
+    }
+
+    // One batch of up to limit article titles in alphabetical order, starting at a continuation token from
+    // a previous call, or at the first title if there is none. Redirects are included. Never cached.
+    public CompletableFuture<AllPages> allPagesAsync(String continueToken, int limit) {
+        PathBuilder path = buildPath("/api.php")
+                .param("action", "query")
+                .param("format", "json")
+                .param("formatversion", "2")
+                .param("list", "allpages")
+                .param("apnamespace", "0")
+                .param("aplimit", limitParam(limit));
+        if (continueToken != null) {
+            path.param("apcontinue", continueToken);
+        }
+        HttpRequest request = jsonRequest()
+                .uri(path.toURI())
+                .build();
+
+        return resilient(() -> send(getEndpointStats(Endpoint.ALL_PAGES), request, jsonDecoder(AllPages.class, this.codec))).thenApply(fetched -> {
+            AllPages result = fetched.getValue();
+            if (result.getError() != null) {
+                throw new CompletionException(new RequestException("Query failed: " + result.getError()));
+            }
+            return result;
+        });
+    }
+
+    private PathBuilder buildQueryPath(List<String> titles) {
+        return buildPath("/api.php")
+                .param("action", "query")
+                .param("format", "json")
+                .param("formatversion", "2")
+                .param("redirects", "1")
+                .param("prop", "info|revisions")
+                .param("rvprop", "ids|timestamp")
+                .param("titles", String.join("|", titles));
+    }
+
+    // Like fetch, but the request goes out as part of a batch. Batched responses carry no validators
+    // for the individual pages, so expired entries are looked up again instead of revalidated.
+    private CompletableFuture<PageObject> fetchBatched(String key, String title) {
+        ResponseCache<PageObject> cache = this.pageCache;
+        MicroBatcher<String, PageObject> batcher = this.pageBatcher;
+        EndpointStats stats = getEndpointStats(Endpoint.PAGE);
+
+        if (cache == null) {
+            return this.singleFlight.execute(key, () -> batcher.submit(title));
+        }
+
+        ResponseCache.Entry<PageObject> entry = cache.get(key);
+        if (entry != null) {
+            stats.onCacheHit();
+            return CompletableFuture.completedFuture(entry.getValue());
+        }
+        stats.onCacheMiss();
+        ResponseCache.Entry<PageObject> restored = cache.takeRestored(key);
+
+        CompletableFuture<PageObject> result = this.singleFlight.execute(key, () -> batcher.submit(title).handle((page, throwable) -> {
+            if (throwable == null) {
+                long revision = page.getLatest() != null ? page.getLatest().getId() : 0;
+                cache.put(key, page, new Validators(null, null, revision));
+                return page;
+            }
+
+            ResponseCache.Entry<PageObject> fallback = cache.serveStale(key);
+            if (fallback != null) {
+                log.fine("Serving stale " + key + ": " + unwrap(throwable));
+                return fallback.getValue();
+            }
+            throw throwable instanceof CompletionException completion ? completion : new CompletionException(throwable);
+        }));
+        return restored != null ? CompletableFuture.completedFuture(restored.getValue()) : result;
+    }
+
+    // Drop what is cached for a page, e.g. because it was edited. Searches are left to expire.
+    public void invalidatePage(String pageKey) {
+        if (pageCache != null) {
+            pageCache.invalidate(pageTemplate.expand(pageKey).key());
+            htmlCache.invalidate(htmlTemplate.expand(pageKey).key());
+        }
+        for (InvalidationListener listener : invalidationListeners) {
+            listener.invalidated(pageKey);
+        }
+    }
+
+    // Drop cached searches that list the page, as its title or excerpt may have changed.
+    public void invalidateSearchesFor(String title) {
+        if (searchCache != null) {
+            String key = title.replace(' ', '_');
+            searchCache.invalidateIf(result -> result.getPages().stream()
+                    .anyMatch(entry -> title.equals(entry.getTitle()) || key.equals(entry.getKey())));
+        }
+    }
+
+    // Drop all cached searches, e.g. because pages were created or deleted, which any search may now find or miss.
+    public void invalidateSearches() {
+        if (searchCache != null) {
+            searchCache.invalidateAll();
+        }
+    }
+
+    public void invalidateAll() {
+        if (pageCache != null) {
+            pageCache.invalidateAll();
+            searchCache.invalidateAll();
+            htmlCache.invalidateAll();
+        }
+        for (InvalidationListener listener : invalidationListeners) {
+            listener.invalidatedAll();
+        }
+    }
+
+    public void addInvalidationListener(InvalidationListener listener) {
+        invalidationListeners.add(listener);
+    }
+
+    public void removeInvalidationListener(InvalidationListener listener) {
+        invalidationListeners.remove(listener);
+    }
+
+    // Whether page() would be answered from cache right now.
+    public boolean isPageCached(String key) {
+        return pageCache != null && pageCache.peek(pageTemplate.expand(key).key()) != null;
+    }
+
+    // Whether search() would be answered from cache or the local index right now.
+    public boolean isSearchCached(String term, int limit) {
+        SearchIndex index = this.searchIndex;
+        return (index != null && limit > 0 && index.matches(term))
+                || (searchCache != null && searchCache.peek(searchTemplate.expand(term, limitParam(limit)).key()) != null);
+    }
+
+    // Null if there is no local index or it found nothing.
+    private SearchResult searchLocally(String term, int limit) {
+        SearchIndex index = this.searchIndex;
+        if (index == null) {
+            return null;
+        }
+        SearchResult result = index.search(term, limit);
+        return result.getPages().isEmpty() ? null : result;
+    }
+
+    // Answer searches from this index first, null to always ask the wiki.
+    public void setSearchIndex(SearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    public ResponseCache<PageObject> getPageCache() {
+        return pageCache;
+    }
+
+    public ResponseCache<SearchResult> getSearchCache() {
+        return searchCache;
+    }
+
+    public ResponseCache<String> getHtmlCache() {
+        return htmlCache;
+    }
+
+    // Turns a fully received response into a value, failing on status codes it can't make sense of.
+    private interface BodyDecoder<T> {
+        T decode(HttpResponse<byte[]> response) throws IOException, RequestException;
+    }
+
+    private static final BodyDecoder<String> HTML_DECODER = response -> {
+        String body;
+        try (InputStream stream = ContentEncoding.decode(response.headers(), response.body())) {
+            body = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        if (response.statusCode() != 200) {
+            throw statusException(response, "Request failed: " + body);
+        }
+        return body;
+    };
+
+    // How cached responses are kept in a ResponseStore.
+    private static final ResponseCache.Serializer<String> HTML_SERIALIZER = new ResponseCache.Serializer<>() {
+        @Override
+        public byte[] serialize(String html) {
+            return html.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String deserialize(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private static <T> ResponseCache.Serializer<T> jsonSerializer(Class<T> clazz, ResponseCodec codec) {
+        return new ResponseCache.Serializer<>() {
+            @Override
+            public byte[] serialize(T value) {
+                return codec.encode(value, clazz).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public T deserialize(byte[] bytes) {
+                return codec.decode(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), clazz);
+            }
+        };
+    }
+
+    private static <T> BodyDecoder<T> jsonDecoder(Class<T> clazz, ResponseCodec codec) {
+        return response -> {
+            // 404 carries a JSON body for missing pages, which decodes to a page without a key.
+            int status = response.statusCode();
+            if ((status < 200 || status >= 300) && status != 404) {
+                throw statusException(response, "Request failed with status " + status);
+            }
+
+            // Inflate straight into the decoder instead of materializing the uncompressed body.
+            try (Reader reader = new InputStreamReader(ContentEncoding.decode(response.headers(), response.body()), StandardCharsets.UTF_8)) {
+                return codec.decode(reader, clazz);
+            }
+        };
+    }
+
+    // A decoded response and what is needed to revalidate it. There is no value if the server answered 304.
+    private static class Fetched<T> {
+        private final T value;
+        private final boolean notModified;
+        private final Validators validators;
+
+        Fetched(T value, boolean notModified, Validators validators) {
+            this.value = value;
+            this.notModified = notModified;
+            this.validators = validators;
+        }
+
+        T getValue() {
+            return value;
+        }
+    }
+
+    // Stats may be null for requests that don't belong to an endpoint.
+    private <T> CompletableFuture<Fetched<T>> send(EndpointStats stats, HttpRequest request, BodyDecoder<T> decoder) {
+        long start = stats != null ? stats.onSend() : 0;
+
+        return exchange(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, throwable) -> {
+                    if (throwable != null) {
+                        if (stats != null) {
+                            stats.onFailure(start);
+                        }
+                        throw new CompletionException(new RequestException(unwrap(throwable)));
+                    }
+
+                    if (stats != null) {
+                        stats.onResponse(start, response.statusCode(), response.body().length);
+                    }
+
+                    Validators validators = Validators.from(response.headers());
+
+                    if (response.statusCode() == 304) {
+                        return new Fetched<>(null, true, validators);
+                    }
+
+                    long decodeStart = System.nanoTime();
+                    try {
+                        return new Fetched<>(decoder.decode(response), false, validators);
+                    } catch (RequestException e) {
+                        throw new CompletionException(e);
+                    } catch (IOException | JsonParseException e) {
+                        throw new CompletionException(new RequestException(e));
+                    } finally {
+                        if (stats != null) {
+                            stats.onParsed(System.nanoTime() - decodeStart);
+                        }
+                    }
+                });
+    }
+
+    // Serve from cache if possible, otherwise join or start the one in-flight request for this key.
+    // Expired entries are revalidated, a 304 keeps them without downloading or decoding anything.
+    // One restored from a snapshot is served right away, without waiting for that.
+    // If the wiki can't be reached, an expired entry is better than nothing.
+    // The request is only built if it has to be sent.
+    private <T> CompletableFuture<T> fetch(Endpoint endpoint, ResponseCache<T> cache, String key, Supplier<HttpRequest> requestSupplier, BodyDecoder<T> decoder) {
+        EndpointStats stats = getEndpointStats(endpoint);
+
+        if (cache == null) {
+            return this.singleFlight.execute(key, () -> {
+                HttpRequest request = requestSupplier.get();
+                return resilient(() -> send(stats, request, decoder)).thenApply(Fetched::getValue);
+            });
+        }
+
+        ResponseCache.Entry<T> entry = cache.get(key);
+        if (entry != null) {
+            stats.onCacheHit();
+            return CompletableFuture.completedFuture(entry.getValue());
+        }
+        stats.onCacheMiss();
+        ResponseCache.Entry<T> restored = cache.takeRestored(key);
+
+        CompletableFuture<T> result = this.singleFlight.execute(key, () -> {
+            ResponseCache.Entry<T> stale = cache.getStale(key);
+            HttpRequest request = requestSupplier.get();
+            HttpRequest conditional = stale != null && stale.getValidators().canRevalidate()
+                    ? conditional(request, stale.getValidators())
+                    : request;
+
+            return resilient(() -> send(stats, conditional, decoder)).handle((fetched, throwable) -> {
+                if (throwable == null) {
+                    if (fetched.notModified) {
+                        if (stale == null) {
+                            throw new CompletionException(new RequestException("Not modified, but nothing was cached"));
+                        }
+                        cache.refresh(key, stale, fetched.validators);
+                        return stale.getValue();
+                    }
+
+                    T value = fetched.value;
+                    Validators validators = fetched.validators;
+                    if (value instanceof PageObject page && page.getLatest() != null) {
+                        validators = validators.withRevisionId(page.getLatest().getId());
+                    }
+
+                    cache.put(key, value, validators);
+                    return value;
+                }
+
+                ResponseCache.Entry<T> fallback = cache.serveStale(key);
+                if (fallback != null) {
+                    log.fine("Serving stale " + key + ": " + unwrap(throwable));
+                    return fallback.getValue();
+                }
+                throw throwable instanceof CompletionException completion ? completion : new CompletionException(throwable);
+            });
+        });
+        return restored != null ? CompletableFuture.completedFuture(restored.getValue()) : result;
+    }
+
+    private static HttpRequest conditional(HttpRequest request, Validators validators) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+        if (validators.getEtag() != null) {
+            builder.header("If-None-Match", validators.getEtag());
+        }
+        if (validators.getLastModified() != null) {
+            builder.header("If-Modified-Since", validators.getLastModified());
+        }
+        return builder.build();
+    }
+
+    // Retry the call with backoff on transient failures, and don't even try while the circuit breaker is open.
+    private <T> CompletableFuture<T> resilient(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(call, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result) {
+        CircuitBreaker breaker = this.circuitBreaker;
+
+        if (!breaker.tryAcquire()) {
+            result.completeExceptionally(new CircuitOpenException("Wiki is unavailable, not sending request"));
+            return;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(new RequestException(e));
+        }
+
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                breaker.onSuccess();
+                result.complete(value);
+                return;
+            }
+
+            Throwable cause = unwrap(throwable);
+            FailureKind kind = FailureKind.classify(cause);
+
+            if (kind.isBreakerFailure()) {
+                breaker.onFailure();
+            } else {
+                // The wiki answered, it's up.
+                breaker.onSuccess();
+            }
+
+            Duration retryAfter = cause instanceof ResponseException response ? response.getRetryAfter() : null;
+            Duration delay = kind.isRetryable() ? this.retryPolicy.delayFor(attempt, retryAfter) : null;
+
+            if (delay == null) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            log.fine("Retrying after " + kind + " in " + delay.toMillis() + "ms: " + cause);
+            retryExecutor(delay).execute(() -> attempt(call, attempt + 1, result));
+        });
+    }
+
+    private Executor retryExecutor(Duration delay) {
+        Executor executor = this.executor;
+        return executor != null
+                ? CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS, executor)
+                : CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static ResponseException statusException(HttpResponse<?> response, String message) {
+        return new ResponseException(response.statusCode(), parseRetryAfter(response), message);
+    }
+
+    // Retry-After is either delay seconds or an HTTP date.
+    private static Duration parseRetryAfter(HttpResponse<?> response) {
+        Optional<String> header = response.headers().firstValue("Retry-After");
+        if (header.isEmpty()) {
+            return null;
+        }
+
+        String value = header.get().trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            try {
+                Duration until = Duration.between(Instant.now(),
+                        ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     public PathBuilder buildPath(String path) {
         return PathBuilder.create(this.baseUrl).appendPath(path);
     }
@@ -157,7 +891,8 @@ public class WikiClient {
 
     public HttpRequest.Builder requestBase() {
         return HttpRequest.newBuilder()
-                .timeout(Duration.ofMinutes(2))
+                .timeout(this.requestTimeout)
+                .header("Accept-Encoding", ContentEncoding.ACCEPT_ENCODING)
                 .GET();
     }
 
@@ -169,41 +904,123 @@ public class WikiClient {
     }
 
     public <T> T sendJsonRequest(HttpRequest request, Class<T> clazz) throws RequestException {
+        return await(sendJsonRequestAsync(request, clazz));
+    }
+
+    public <T> CompletableFuture<T> sendJsonRequestAsync(HttpRequest request, Class<T> clazz) {
+        return sendJsonRequestAsync(request, clazz, this.codec);
+    }
+
+    // The body is buffered by the client's selector thread, decoding only starts once it has fully arrived.
+    public <T> CompletableFuture<T> sendJsonRequestAsync(HttpRequest request, Class<T> clazz, ResponseCodec codec) {
+        return send(null, request, jsonDecoder(clazz, codec)).thenApply(Fetched::getValue);
+    }
+
+    // Every request goes through here so the transport stats see it.
+    private <T> CompletableFuture<HttpResponse<T>> exchange(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        this.transportStats.onSend();
+        this.lastExchange = System.nanoTime();
+
+        CompletableFuture<HttpResponse<T>> future;
         try {
-            HttpResponse<InputStream> send = this.client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            future = this.client.sendAsync(request, handler);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
 
-            try (Reader reader = new InputStreamReader(send.body(), StandardCharsets.UTF_8)) {
-                Gson gson = new GsonBuilder().create();
-                return gson.fromJson(reader, clazz);
+        return future.whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                this.transportStats.onFailure();
+            } else {
+                this.transportStats.onResponse(response.version());
             }
-        } catch (IOException | InterruptedException e) {
-            throw new RequestException(e);
+        });
+    }
+
+    // Open a connection ahead of time so the first real request doesn't pay for the TLS handshake.
+    // Completes with the protocol version the server agreed to.
+    public CompletableFuture<HttpClient.Version> warmUp() {
+        HttpRequest request = requestBase()
+                .uri(buildPath("/").toURI())
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+
+        return exchange(request, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::version);
+    }
+
+    // Warm up again if nothing was sent for the given time, so the pooled connection doesn't idle out.
+    public void keepAlive(Duration idle) {
+        if (System.nanoTime() - this.lastExchange >= idle.toNanos()) {
+            warmUp().exceptionally(throwable -> {
+                log.fine("Keep-alive request failed: " + throwable);
+                return null;
+            });
+        }
+    }
+
+    public EndpointStats getEndpointStats(Endpoint endpoint) {
+        return endpointStats.get(endpoint);
+    }
+
+    // Current stats of every endpoint, in declaration order.
+    public List<EndpointStats.Snapshot> snapshotEndpointStats() {
+        List<EndpointStats.Snapshot> snapshots = new ArrayList<>();
+        for (EndpointStats stats : endpointStats.values()) {
+            snapshots.add(stats.snapshot());
         }
+        return snapshots;
+    }
+
+    public TransportStats getTransportStats() {
+        return transportStats;
     }
 
     public HttpRequest buildSearchRequest(String term, int limit) {
-        return jsonRequest()
-                .uri(buildRestPath("/search/page")
-                        .param("q", term)
-                        .param("limit", String.valueOf(limit))
-                        .toURI())
-                .build();
+        return searchTemplate.request(searchTemplate.expand(term, limitParam(limit)), requestTimeout);
     }
 
     public HttpRequest buildSearchTitleRequest(String term, int limit) {
-        return jsonRequest()
-                .uri(buildRestPath("/search/title")
-                        .param("q", term)
-                        .param("limit", String.valueOf(limit))
-                        .toURI())
-                .build();
+        return searchTitleTemplate.request(searchTitleTemplate.expand(term, limitParam(limit)), requestTimeout);
     }
 
+    private static String limitParam(int limit) {
+        return limit >= 0 && limit < LIMIT_PARAMS.length ? LIMIT_PARAMS[limit] : String.valueOf(limit);
+    }
+
+    // Cached responses were decoded with the previous codec, so this only affects new requests.
+    public void setCodec(ResponseCodec codec) {
+        this.codec = codec;
+        this.pageDecoder = jsonDecoder(PageObject.class, codec);
+        this.searchDecoder = jsonDecoder(SearchResult.class, codec);
+    }
+
+    public ResponseCodec getCodec() {
+        return codec;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
 
     public void rebuild() {
         this.client = this.builder.build();
     }
 
+    // Run response handling, and everything chained onto the returned futures that doesn't ask for
+    // another executor, on this executor instead of the HttpClient's default pool. Retries are
+    // scheduled onto it as well. Pass a virtual thread per task executor to have blocked or slow
+    // lookups only park virtual threads.
+    public void setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+        this.builder.executor(executor);
+        this.rebuild();
+    }
+
+    // Null while the HttpClient's default executor is used.
+    public Executor getExecutor() {
+        return executor;
+    }
+
     public HttpClient.Builder builder() {
         return this.builder;
     }
@@ -211,4 +1028,35 @@ public class WikiClient {
     public String getBaseUrl() {
         return baseUrl;
     }
+
+    // Block until the future completes, surfacing failures the same way the synchronous API always has.
+    private static <T> T await(CompletableFuture<T> future) throws RequestException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RequestException requestException) {
+                throw requestException;
+            }
+            throw new RequestException(cause);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException)
+                && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
 }
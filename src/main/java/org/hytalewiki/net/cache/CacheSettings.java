@@ -0,0 +1,62 @@
+package org.hytalewiki.net.cache;
+
+import java.time.Duration;
+
+// Limits and expiry times for a ResponseCache.
+public class CacheSettings {
+
+    private int maximumSize = 1024;
+
+    private long maximumWeight = 16384;
+
+    private Duration positiveTtl = Duration.ofMinutes(10);
+
+    private Duration negativeTtl = Duration.ofMinutes(1);
+
+    CacheSettings() {
+    }
+
+    public static CacheSettings create() {
+        return new CacheSettings();
+    }
+
+    // Maximum number of entries, the least recently used ones are evicted first.
+    public CacheSettings maximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    // Maximum summed weight of all entries, see ResponseCache weighers.
+    public CacheSettings maximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+        return this;
+    }
+
+    // How long a response that found something stays fresh.
+    public CacheSettings positiveTtl(Duration positiveTtl) {
+        this.positiveTtl = positiveTtl;
+        return this;
+    }
+
+    // How long a response that found nothing (missing page, empty search) stays fresh.
+    public CacheSettings negativeTtl(Duration negativeTtl) {
+        this.negativeTtl = negativeTtl;
+        return this;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public Duration getPositiveTtl() {
+        return positiveTtl;
+    }
+
+    public Duration getNegativeTtl() {
+        return negativeTtl;
+    }
+}
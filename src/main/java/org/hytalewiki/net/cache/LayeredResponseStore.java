@@ -0,0 +1,46 @@
+package org.hytalewiki.net.cache;
+
+// See ResponseStore.layered.
+final class LayeredResponseStore implements ResponseStore {
+
+    private final ResponseStore first;
+    private final ResponseStore second;
+
+    LayeredResponseStore(ResponseStore first, ResponseStore second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public Stored get(String key) {
+        Stored stored = first.get(key);
+        return stored != null ? stored : second.get(key);
+    }
+
+    @Override
+    public void put(String key, byte[] value, long expiresAtMillis) {
+        first.put(key, value, expiresAtMillis);
+        second.put(key, value, expiresAtMillis);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        first.invalidate(key);
+        second.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        first.invalidateAll();
+        second.invalidateAll();
+    }
+
+    @Override
+    public void close() {
+        try {
+            first.close();
+        } finally {
+            second.close();
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package org.hytalewiki.net.cache;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+// A ResponseStore in a memory-mapped file, so every server process on the host that maps the same file
+// shares one copy of the stored responses, in the OS page cache rather than on anyone's heap.
+//
+// The file is a header, an open addressing hash index of (key hash, record offset) slots and a data area
+// that records are appended to. Index words are only accessed through a VarHandle, atomically and
+// with volatile semantics, so processes coordinate without locks: writers reserve space by moving the end
+// of the data area with a compare-and-set, write their record, then publish its offset in the key's slot.
+// Readers never wait. Published records are never written again, and each carries a checksum and the
+// generation it was written in, so a reader that raced with a reset or a writer that lost track of one
+// sees a mismatch and treats it as a miss.
+//
+// Nothing is compacted. Once the data area or the index fills up, the whole store is reset, which starts
+// a new generation; it's a cache, so dropping everything now and then is fine.
+public final class MappedResponseStore implements ResponseStore {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long MAGIC = 0x3130_5453_5257_4821L;
+
+    // Header fields, each a long.
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SLOTS_OFFSET = 8;
+    private static final int DATA_END_OFFSET = 16;
+    // Odd while a reset is in progress.
+    private static final int GENERATION_OFFSET = 24;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SLOT_SIZE = 16;
+
+    // keyLength, valueLength, expiresAtMillis, generation, checksum and padding.
+    private static final int RECORD_HEADER_SIZE = 32;
+
+    private static final int MAX_PROBES = 16;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final int slotMask;
+    private final long dataStart;
+    private final long capacity;
+
+    private final LongSupplier clock;
+
+    private final LongAdder resets = new LongAdder();
+
+    private MappedResponseStore(Path file, FileChannel channel, MappedByteBuffer buffer, int slots, LongSupplier clock) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.slotMask = slots - 1;
+        this.dataStart = HEADER_SIZE + (long) slots * SLOT_SIZE;
+        this.capacity = buffer.capacity();
+        this.clock = clock;
+    }
+
+    // Map the store at file, creating it with the given size and number of index slots if it doesn't exist
+    // yet. An existing store keeps the layout it was created with.
+    public static MappedResponseStore open(Path file, int sizeBytes, int slots) throws IOException {
+        return open(file, sizeBytes, slots, System::currentTimeMillis);
+    }
+
+    static MappedResponseStore open(Path file, int sizeBytes, int slots, LongSupplier clock) throws IOException {
+        int slotCount = Integer.highestOneBit(Math.max(64, slots));
+        if ((long) slotCount * SLOT_SIZE + HEADER_SIZE >= sizeBytes / 2) {
+            throw new IllegalArgumentException("Store of " + sizeBytes + " bytes is too small for " + slotCount + " slots");
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // Only held while checking the header, so two processes starting at once don't both initialize.
+            try (FileLock ignored = channel.lock()) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(header, 0);
+
+                if (channel.size() >= HEADER_SIZE && header.getLong(MAGIC_OFFSET) == MAGIC) {
+                    slotCount = (int) header.getLong(SLOTS_OFFSET);
+                    sizeBytes = (int) Math.min(Integer.MAX_VALUE, channel.size());
+                } else {
+                    channel.truncate(0);
+                    header.clear();
+                    header.putLong(MAGIC_OFFSET, MAGIC)
+                            .putLong(SLOTS_OFFSET, slotCount)
+                            .putLong(DATA_END_OFFSET, HEADER_SIZE + (long) slotCount * SLOT_SIZE)
+                            .putLong(GENERATION_OFFSET, 0);
+                    channel.write(header, 0);
+                    // Sparse, the rest reads as zeros: empty slots.
+                    channel.write(ByteBuffer.allocate(1), sizeBytes - 1);
+                }
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            MappedResponseStore store = new MappedResponseStore(file, channel, buffer, slotCount, clock);
+            store.recoverFromCrashedReset();
+            return store;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Stored get(String key) {
+        long generation = generation();
+        if ((generation & 1) != 0) {
+            return null;
+        }
+
+        long hash = hash(key);
+        long slot = findSlot(hash);
+        if (slot < 0) {
+            return null;
+        }
+        long offset = (long) LONGS.getVolatile(buffer, (int) slot + 8);
+        if (offset == 0) {
+            return null;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        Stored stored = readRecord(offset, keyBytes, generation);
+
+        // A reset may have started while the record was read.
+        if (stored == null || generation() != generation || stored.expiresAtMillis() - clock.getAsLong() <= 0) {
+            return null;
+        }
+        return stored;
+    }
+
+    @Override
+    public void put(String key, byte[] value, long expiresAtMillis) {
+        long generation = generation();
+        if ((generation & 1) != 0) {
+            return;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long size = align(RECORD_HEADER_SIZE + (long) keyBytes.length + value.length);
+        if (size > (capacity - dataStart) / 8) {
+            // Not worth pushing a good part of the store out for.
+            return;
+        }
+
+        long offset = reserve(size);
+        if (offset < 0) {
+            reset(generation);
+            return;
+        }
+
+        writeRecord(offset, keyBytes, value, expiresAtMillis, generation);
+
+        long hash = hash(key);
+        long slot = claimSlot(hash);
+        if (slot < 0) {
+            reset(generation);
+            return;
+        }
+        LONGS.setVolatile(buffer, (int) slot + 8, offset);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        long slot = findSlot(hash(key));
+        if (slot >= 0) {
+            LONGS.setVolatile(buffer, (int) slot + 8, 0L);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        long generation = generation();
+        if ((generation & 1) == 0) {
+            reset(generation);
+        }
+    }
+
+    // Slot holding the hash, or -1. Slots are never freed, only their offset is cleared, so probing can
+    // stop at the first empty one.
+    private long findSlot(long hash) {
+        int index = (int) hash & slotMask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long position = HEADER_SIZE + (long) index * SLOT_SIZE;
+            long current = (long) LONGS.getVolatile(buffer, (int) position);
+            if (current == hash) {
+                return position;
+            }
+            if (current == 0) {
+                return -1;
+            }
+            index = (index + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    // Slot for the hash, taking an empty one if it has none yet. -1 if the neighbourhood is full.
+    private long claimSlot(long hash) {
+        int index = (int) hash & slotMask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long position = HEADER_SIZE + (long) index * SLOT_SIZE;
+            long current = (long) LONGS.getVolatile(buffer, (int) position);
+            if (current == hash) {
+                return position;
+            }
+            if (current == 0) {
+                if (LONGS.compareAndSet(buffer, (int) position, 0L, hash)) {
+                    return position;
+                }
+                // Someone else took it, maybe for the same hash.
+                if ((long) LONGS.getVolatile(buffer, (int) position) == hash) {
+                    return position;
+                }
+            }
+            index = (index + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    // Offset of size bytes in the data area for the caller alone, or -1 if it's full.
+    private long reserve(long size) {
+        while (true) {
+            long end = (long) LONGS.getVolatile(buffer, DATA_END_OFFSET);
+            if (end + size > capacity) {
+                return -1;
+            }
+            if (LONGS.compareAndSet(buffer, DATA_END_OFFSET, end, end + size)) {
+                return end;
+            }
+        }
+    }
+
+    private void writeRecord(long offset, byte[] key, byte[] value, long expiresAtMillis, long generation) {
+        int position = (int) offset;
+        buffer.putInt(position, key.length);
+        buffer.putInt(position + 4, value.length);
+        buffer.putLong(position + 8, expiresAtMillis);
+        buffer.putLong(position + 16, generation);
+        buffer.putInt(position + 24, checksum(key, value, expiresAtMillis));
+        buffer.put(position + RECORD_HEADER_SIZE, key);
+        buffer.put(position + RECORD_HEADER_SIZE + key.length, value);
+    }
+
+    // Null unless the record is intact, of this generation and for this key.
+    private Stored readRecord(long offset, byte[] key, long generation) {
+        if (offset < dataStart || offset + RECORD_HEADER_SIZE > capacity) {
+            return null;
+        }
+
+        int position = (int) offset;
+        int keyLength = buffer.getInt(position);
+        int valueLength = buffer.getInt(position + 4);
+        if (keyLength != key.length || valueLength < 0
+                || offset + RECORD_HEADER_SIZE + keyLength + (long) valueLength > capacity) {
+            return null;
+        }
+        long expiresAtMillis = buffer.getLong(position + 8);
+        if (buffer.getLong(position + 16) != generation) {
+            return null;
+        }
+        int checksum = buffer.getInt(position + 24);
+
+        byte[] storedKey = new byte[keyLength];
+        buffer.get(position + RECORD_HEADER_SIZE, storedKey);
+        if (!Arrays.equals(storedKey, key)) {
+            return null;
+        }
+        byte[] value = new byte[valueLength];
+        buffer.get(position + RECORD_HEADER_SIZE + keyLength, value);
+
+        return checksum(key, value, expiresAtMillis) == checksum ? new Stored(value, expiresAtMillis) : null;
+    }
+
+    // Drop everything, unless another reset already moved past the given generation.
+    private void reset(long generation) {
+        if (!LONGS.compareAndSet(buffer, GENERATION_OFFSET, generation, generation + 1)) {
+            return;
+        }
+        clear();
+        LONGS.setVolatile(buffer, GENERATION_OFFSET, generation + 2);
+        resets.increment();
+    }
+
+    private void clear() {
+        for (long position = HEADER_SIZE; position < dataStart; position += SLOT_SIZE) {
+            LONGS.setVolatile(buffer, (int) position, 0L);
+            LONGS.setVolatile(buffer, (int) position + 8, 0L);
+        }
+        LONGS.setVolatile(buffer, DATA_END_OFFSET, dataStart);
+    }
+
+    // A process that died while resetting leaves the generation odd, which would disable the store for good.
+    // Give a live reset a moment to finish, then finish it here.
+    private void recoverFromCrashedReset() {
+        long generation = generation();
+        if ((generation & 1) == 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (generation() == generation) {
+            clear();
+            LONGS.compareAndSet(buffer, GENERATION_OFFSET, generation, generation + 1);
+        }
+    }
+
+    private long generation() {
+        return (long) LONGS.getVolatile(buffer, GENERATION_OFFSET);
+    }
+
+    // Bytes taken by records, including ones that were replaced or invalidated since the last reset.
+    public long getUsedBytes() {
+        return (long) LONGS.getVolatile(buffer, DATA_END_OFFSET) - dataStart;
+    }
+
+    public long getCapacity() {
+        return capacity - dataStart;
+    }
+
+    // Resets done by this process.
+    public long getResetCount() {
+        return resets.sum();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // The mapping stays valid until it is collected either way.
+        }
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    // FNV-1a over the UTF-16 code units, never 0 as that marks an empty slot.
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int checksum(byte[] key, byte[] value, long expiresAtMillis) {
+        CRC32C crc = new CRC32C();
+        crc.update(key);
+        crc.update(value);
+        crc.update(ByteBuffer.allocate(8).putLong(0, expiresAtMillis));
+        return (int) crc.getValue();
+    }
+}
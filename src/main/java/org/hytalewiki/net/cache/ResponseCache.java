@@ -0,0 +1,469 @@
+package org.hytalewiki.net.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+// Bounded, thread-safe cache of decoded wiki responses keyed by request URI.
+// Entries expire after a TTL that depends on whether the response found anything,
+// and are evicted least recently used first once the size or weight limit is hit.
+// Optionally backed by a ResponseStore: misses are looked up there, and new entries written through.
+public class ResponseCache<V> {
+
+    // Turns values into bytes for a ResponseStore and back.
+    public interface Serializer<V> {
+        byte[] serialize(V value);
+
+        // May throw on bytes it can't make sense of, those are treated as a miss.
+        V deserialize(byte[] bytes);
+    }
+
+    private final CacheSettings settings;
+
+    // Decides whether a response is negative (the wiki had nothing), those get the shorter TTL.
+    private final Predicate<V> negative;
+
+    private final ToIntFunction<V> weigher;
+
+    private final LongSupplier clock;
+
+    // Both null unless backed by a store.
+    private final ResponseStore store;
+    private final Serializer<V> serializer;
+
+    // Access ordered, the eldest entry is the least recently used one.
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder restoredHits = new LongAdder();
+
+    public ResponseCache(CacheSettings settings, Predicate<V> negative, ToIntFunction<V> weigher) {
+        this(settings, negative, weigher, null, null);
+    }
+
+    public ResponseCache(CacheSettings settings, Predicate<V> negative, ToIntFunction<V> weigher,
+                         ResponseStore store, Serializer<V> serializer) {
+        this(settings, negative, weigher, System::nanoTime, store, serializer);
+    }
+
+    ResponseCache(CacheSettings settings, Predicate<V> negative, ToIntFunction<V> weigher, LongSupplier clock) {
+        this(settings, negative, weigher, clock, null, null);
+    }
+
+    ResponseCache(CacheSettings settings, Predicate<V> negative, ToIntFunction<V> weigher, LongSupplier clock,
+                  ResponseStore store, Serializer<V> serializer) {
+        this.settings = settings;
+        this.negative = negative;
+        this.weigher = weigher;
+        this.clock = clock;
+        this.store = store;
+        this.serializer = serializer;
+    }
+
+    public static class Entry<V> {
+        private final V value;
+        private final int weight;
+        private final long expiresAt;
+        private final Validators validators;
+        // Loaded from the store already expired, and not handed out for revalidation yet.
+        private final boolean restored;
+
+        Entry(V value, int weight, long expiresAt, Validators validators) {
+            this(value, weight, expiresAt, validators, false);
+        }
+
+        Entry(V value, int weight, long expiresAt, Validators validators, boolean restored) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+            this.validators = validators;
+            this.restored = restored;
+        }
+
+        // May be null, missing pages are cached as well.
+        public V getValue() {
+            return value;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public Validators getValidators() {
+            return validators;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt - now <= 0;
+        }
+    }
+
+    // Get a fresh entry, or null if there is none. Expired entries stay around for getStale until evicted.
+    public Entry<V> get(String key) {
+        Entry<V> entry = getFresh(key);
+        if (entry == null) {
+            entry = load(key);
+        }
+
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    // Get a fresh entry without counting a hit or miss.
+    public Entry<V> peek(String key) {
+        Entry<V> entry = getFresh(key);
+        return entry != null ? entry : load(key);
+    }
+
+    private Entry<V> getFresh(String key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            return entry == null || entry.isExpired(clock.getAsLong()) ? null : entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Take a fresh entry from the store, for as long as it has left there. An expired one, e.g. from a
+    // snapshot taken before a restart, is kept for takeRestored unless there's an entry for the key already.
+    private Entry<V> load(String key) {
+        if (store == null) {
+            return null;
+        }
+        ResponseStore.Stored stored = store.get(key);
+        if (stored == null) {
+            return null;
+        }
+
+        V value;
+        Validators validators;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(stored.value()))) {
+            String etag = in.readUTF();
+            String lastModified = in.readUTF();
+            long revisionId = in.readLong();
+            validators = new Validators(etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified, revisionId);
+            value = serializer.deserialize(in.readAllBytes());
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+
+        long remaining = TimeUnit.MILLISECONDS.toNanos(stored.expiresAtMillis() - System.currentTimeMillis());
+        if (value == null) {
+            return null;
+        }
+
+        int entryWeight = Math.max(1, weigher.applyAsInt(value));
+        if (remaining <= 0) {
+            lock.lock();
+            try {
+                if (!entries.containsKey(key)) {
+                    entries.put(key, new Entry<>(value, entryWeight, clock.getAsLong() + remaining, validators, true));
+                    weight += entryWeight;
+                    evict();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+
+        Entry<V> entry = new Entry<>(value, entryWeight, clock.getAsLong() + remaining, validators);
+        insert(key, entry);
+        storeHits.increment();
+        return entry;
+    }
+
+    // An expired entry restored from the store, handed out once so it can be served right away while it is
+    // revalidated. Null if there is none, or it was taken already.
+    public Entry<V> takeRestored(String key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry == null || !entry.restored) {
+                return null;
+            }
+            entries.put(key, new Entry<>(entry.value, entry.weight, entry.expiresAt, entry.validators));
+            restoredHits.increment();
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Get an entry even if it has expired, without counting anything.
+    public Entry<V> getStale(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Get an entry even if it has expired, as a fallback when the wiki can't be reached.
+    public Entry<V> serveStale(String key) {
+        Entry<V> entry = getStale(key);
+        if (entry != null) {
+            staleHits.increment();
+        }
+        return entry;
+    }
+
+    public void put(String key, V value) {
+        put(key, value, Validators.NONE);
+    }
+
+    public void put(String key, V value, Validators validators) {
+        int entryWeight = value == null ? 1 : Math.max(1, weigher.applyAsInt(value));
+        store(key, value, entryWeight, validators);
+    }
+
+    // The wiki confirmed the entry is still current, start its TTL over without touching the value.
+    // validators are those the confirmation came with, they replace the entry's where set.
+    public void refresh(String key, Entry<V> entry, Validators validators) {
+        store(key, entry.value, entry.weight, entry.validators.updatedBy(validators));
+        revalidations.increment();
+    }
+
+    private void store(String key, V value, int entryWeight, Validators validators) {
+        boolean isNegative = value == null || negative.test(value);
+        long ttl = (isNegative ? settings.getNegativeTtl() : settings.getPositiveTtl()).toNanos();
+
+        if (ttl <= 0) {
+            return;
+        }
+
+        insert(key, new Entry<>(value, entryWeight, clock.getAsLong() + ttl, validators));
+
+        if (store != null && value != null) {
+            writeThrough(key, value, validators, ttl);
+        }
+    }
+
+    private void insert(String key, Entry<V> entry) {
+        lock.lock();
+        try {
+            Entry<V> previous = entries.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entry.weight;
+
+            evict();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeThrough(String key, V value, Validators validators, long ttlNanos) {
+        store.put(key, encode(value, validators), System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+    }
+
+    // Validators go in front of the value, so entries loaded from the store can be revalidated as well.
+    private byte[] encode(V value, Validators validators) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(validators.getEtag() != null ? validators.getEtag() : "");
+            out.writeUTF(validators.getLastModified() != null ? validators.getLastModified() : "");
+            out.writeLong(validators.getRevisionId());
+            out.write(serializer.serialize(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // An entry as a store would keep it.
+    public record Exported(String key, byte[] value, long expiresAtMillis) {
+    }
+
+    // Up to limit entries that have a value, expired ones included, the most recently used first.
+    public List<Exported> exportHottest(int limit) {
+        if (serializer == null) {
+            throw new IllegalStateException("No serializer to export with");
+        }
+
+        List<Map.Entry<String, Entry<V>>> hottest = new ArrayList<>();
+        lock.lock();
+        try {
+            // Access ordered, so the hottest are at the end.
+            for (Map.Entry<String, Entry<V>> entry : entries.entrySet()) {
+                if (entry.getValue().value != null) {
+                    hottest.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long now = clock.getAsLong();
+        long nowMillis = System.currentTimeMillis();
+        List<Exported> exported = new ArrayList<>(Math.min(limit, hottest.size()));
+        for (Map.Entry<String, Entry<V>> entry : hottest.reversed()) {
+            if (exported.size() >= limit) {
+                break;
+            }
+            Entry<V> value = entry.getValue();
+            exported.add(new Exported(entry.getKey(), encode(value.value, value.validators),
+                    nowMillis + TimeUnit.NANOSECONDS.toMillis(value.expiresAt - now)));
+        }
+        return exported;
+    }
+
+    public void invalidate(String key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                remove(key, entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (store != null) {
+            store.invalidate(key);
+        }
+    }
+
+    // Drop every entry whose value matches, e.g. search results that list a changed page.
+    // Only entries held here are matched, in the store they are dropped if they are held here as well.
+    public void invalidateIf(Predicate<V> predicate) {
+        List<String> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry<V>> entry = iterator.next();
+                if (predicate.test(entry.getValue().getValue())) {
+                    iterator.remove();
+                    weight -= entry.getValue().weight;
+                    removed.add(entry.getKey());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (store != null) {
+            removed.forEach(store::invalidate);
+        }
+    }
+
+    // Like invalidateIf, only what's held here is dropped from the store, which other caches may share.
+    public void invalidateAll() {
+        List<String> removed;
+        lock.lock();
+        try {
+            removed = new ArrayList<>(entries.keySet());
+            entries.clear();
+            weight = 0;
+        } finally {
+            lock.unlock();
+        }
+        if (store != null) {
+            removed.forEach(store::invalidate);
+        }
+    }
+
+    // Drop least recently used entries until both limits are satisfied. Caller holds the lock.
+    private void evict() {
+        Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()
+                && (entries.size() > settings.getMaximumSize() || weight > settings.getMaximumWeight())) {
+            Entry<V> eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight;
+            evictions.increment();
+        }
+    }
+
+    private void remove(String key, Entry<V> entry) {
+        entries.remove(key);
+        weight -= entry.weight;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long weight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    // Number of expired entries served because the wiki couldn't be reached.
+    public long getStaleHitCount() {
+        return staleHits.sum();
+    }
+
+    // Number of expired entries the wiki confirmed as unchanged.
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    // Misses answered from the store.
+    public long getStoreHitCount() {
+        return storeHits.sum();
+    }
+
+    // Expired entries restored from the store that were served while revalidated.
+    public long getRestoredHitCount() {
+        return restoredHits.sum();
+    }
+
+    public ResponseStore getStore() {
+        return store;
+    }
+
+    public CacheSettings getSettings() {
+        return settings;
+    }
+}
@@ -0,0 +1,29 @@
+package org.hytalewiki.net.cache;
+
+// Serialized responses kept outside of a ResponseCache's heap, e.g. shared with other server processes
+// on the same host. A ResponseCache backed by a store looks there before asking the wiki, and writes
+// what it fetched through to it. Implementations must be thread-safe, and may drop entries at any time.
+public interface ResponseStore extends AutoCloseable {
+
+    // A stored response and when it stops being fresh, in epoch millis since it may be read by another process.
+    record Stored(byte[] value, long expiresAtMillis) {
+    }
+
+    // Null if nothing is stored for the key. May be expired, e.g. when kept across a restart, the cache then
+    // serves it once while revalidating it.
+    Stored get(String key);
+
+    void put(String key, byte[] value, long expiresAtMillis);
+
+    void invalidate(String key);
+
+    void invalidateAll();
+
+    @Override
+    void close();
+
+    // Look in first, then in second. Writes and invalidations go to both.
+    static ResponseStore layered(ResponseStore first, ResponseStore second) {
+        return new LayeredResponseStore(first, second);
+    }
+}
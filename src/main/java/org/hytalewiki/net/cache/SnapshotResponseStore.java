@@ -0,0 +1,266 @@
+package org.hytalewiki.net.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// A read-only ResponseStore over a snapshot of the hottest cached responses, written on shutdown so the next
+// start doesn't have to ask the wiki for all of them again at once. The file is only read once the first
+// lookup needs it. It is read into memory rather than mapped, so shutdown can replace it with the next
+// snapshot while this one is still open, which Windows refuses for mapped files.
+//
+// Entries keep their validators and when they expire. Ones that expired while the server was down are
+// still returned for up to maxStale, to be served right away while they are revalidated.
+//
+// The file is a header, an index of (key hash, record offset) pairs sorted by hash and the records.
+public final class SnapshotResponseStore implements ResponseStore {
+
+    private static final long MAGIC = 0x3130_5041_4e53_4821L;
+
+    // magic, entry count and padding.
+    private static final int HEADER_SIZE = 16;
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    // keyLength, valueLength and expiresAtMillis.
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final Path file;
+
+    private final long maxStaleMillis;
+
+    private final LongSupplier clock;
+
+    // The snapshot file's contents, null until the first lookup.
+    private volatile ByteBuffer buffer;
+
+    // Keys in the snapshot it is outdated for, written or invalidated since it was taken. Only keys the
+    // snapshot has go in here, so it can't grow past it.
+    private final Set<String> superseded = ConcurrentHashMap.newKeySet();
+    private volatile boolean cleared;
+
+    private SnapshotResponseStore(Path file, Duration maxStale, LongSupplier clock) {
+        this.file = file;
+        this.maxStaleMillis = maxStale.toMillis();
+        this.clock = clock;
+    }
+
+    // Doesn't touch the file yet, a missing or unreadable one just doesn't have anything.
+    public static SnapshotResponseStore open(Path file, Duration maxStale) {
+        return open(file, maxStale, System::currentTimeMillis);
+    }
+
+    static SnapshotResponseStore open(Path file, Duration maxStale, LongSupplier clock) {
+        return new SnapshotResponseStore(file, maxStale, clock);
+    }
+
+    // Write a snapshot of the entries, keeping the first of each key. Returns the number of entries written.
+    public static int write(Path file, Collection<ResponseCache.Exported> entries) throws IOException {
+        Set<String> keys = new HashSet<>();
+        List<ResponseCache.Exported> unique = new ArrayList<>();
+        for (ResponseCache.Exported entry : entries) {
+            if (keys.add(entry.key())) {
+                unique.add(entry);
+            }
+        }
+        unique.sort(Comparator.comparingLong(entry -> MappedResponseStore.hash(entry.key())));
+
+        List<byte[]> encodedKeys = new ArrayList<>(unique.size());
+        for (ResponseCache.Exported entry : unique) {
+            encodedKeys.add(entry.key().getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeLong(MAGIC);
+            out.writeInt(unique.size());
+            out.writeInt(0);
+
+            long offset = HEADER_SIZE + (long) unique.size() * INDEX_ENTRY_SIZE;
+            for (int i = 0; i < unique.size(); i++) {
+                out.writeLong(MappedResponseStore.hash(unique.get(i).key()));
+                out.writeLong(offset);
+                offset += RECORD_HEADER_SIZE + encodedKeys.get(i).length + unique.get(i).value().length;
+            }
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot of " + offset + " bytes is too large");
+            }
+
+            for (int i = 0; i < unique.size(); i++) {
+                ResponseCache.Exported entry = unique.get(i);
+                out.writeInt(encodedKeys.get(i).length);
+                out.writeInt(entry.value().length);
+                out.writeLong(entry.expiresAtMillis());
+                out.write(encodedKeys.get(i));
+                out.write(entry.value());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return unique.size();
+    }
+
+    @Override
+    public Stored get(String key) {
+        if (cleared || superseded.contains(key)) {
+            return null;
+        }
+
+        Stored stored = lookup(key);
+        return stored != null && stored.expiresAtMillis() + maxStaleMillis - clock.getAsLong() > 0 ? stored : null;
+    }
+
+    // The snapshot's entry for the key, or null if it has none.
+    private Stored lookup(String key) {
+        ByteBuffer contents = buffer();
+        int count = count(contents);
+        long hash = MappedResponseStore.hash(key);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        try {
+            // First index entry with the hash, then every one after it with the same hash.
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (contents.getLong(HEADER_SIZE + middle * INDEX_ENTRY_SIZE) < hash) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            for (int i = low; i < count && contents.getLong(HEADER_SIZE + i * INDEX_ENTRY_SIZE) == hash; i++) {
+                Stored stored = readRecord(contents, (int) contents.getLong(HEADER_SIZE + i * INDEX_ENTRY_SIZE + 8), keyBytes);
+                if (stored != null) {
+                    return stored;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or otherwise damaged, no use looking any further.
+            this.buffer = EMPTY;
+        }
+        return null;
+    }
+
+    // Null unless the record is for this key.
+    private static Stored readRecord(ByteBuffer contents, int offset, byte[] key) {
+        int keyLength = contents.getInt(offset);
+        if (keyLength != key.length) {
+            return null;
+        }
+        int valueLength = contents.getInt(offset + 4);
+        if (valueLength < 0) {
+            return null;
+        }
+        long expiresAtMillis = contents.getLong(offset + 8);
+
+        byte[] storedKey = new byte[keyLength];
+        contents.get(offset + RECORD_HEADER_SIZE, storedKey);
+        if (!Arrays.equals(storedKey, key)) {
+            return null;
+        }
+        byte[] value = new byte[valueLength];
+        contents.get(offset + RECORD_HEADER_SIZE + keyLength, value);
+        return new Stored(value, expiresAtMillis);
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer contents = this.buffer;
+        if (contents == null) {
+            synchronized (this) {
+                contents = this.buffer;
+                if (contents == null) {
+                    contents = read();
+                    this.buffer = contents;
+                }
+            }
+        }
+        return contents;
+    }
+
+    private ByteBuffer read() {
+        try {
+            if (Files.size(file) > Integer.MAX_VALUE) {
+                return EMPTY;
+            }
+            ByteBuffer contents = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (contents.capacity() < HEADER_SIZE || contents.getLong(0) != MAGIC
+                    || HEADER_SIZE + (long) count(contents) * INDEX_ENTRY_SIZE > contents.capacity()) {
+                return EMPTY;
+            }
+            return contents;
+        } catch (IOException e) {
+            // Most likely there is no snapshot yet.
+            return EMPTY;
+        }
+    }
+
+    private static int count(ByteBuffer contents) {
+        return contents.capacity() >= HEADER_SIZE ? Math.max(0, contents.getInt(8)) : 0;
+    }
+
+    // Entries in the snapshot, reads it if it isn't yet.
+    public int size() {
+        return count(buffer());
+    }
+
+    int getSupersededCount() {
+        return superseded.size();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Anything written is newer than the snapshot, the cache keeps it or a store layered in front of this one.
+    @Override
+    public void put(String key, byte[] value, long expiresAtMillis) {
+        supersede(key);
+    }
+
+    @Override
+    public void invalidate(String key) {
+        supersede(key);
+    }
+
+    private void supersede(String key) {
+        if (!cleared && !superseded.contains(key) && lookup(key) != null) {
+            superseded.add(key);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        discard();
+    }
+
+    // Stop answering from the snapshot at all, e.g. because the wiki changed more than can be told key by key.
+    public void discard() {
+        cleared = true;
+    }
+
+    @Override
+    public void close() {
+        this.buffer = EMPTY;
+    }
+}
@@ -0,0 +1,80 @@
+package org.hytalewiki.net.cache;
+
+import java.net.http.HttpHeaders;
+
+// What is needed to ask the wiki whether a cached response is still current.
+public class Validators {
+
+    public static final Validators NONE = new Validators(null, null, 0);
+
+    private final String etag;
+    private final String lastModified;
+
+    // Revision the response was rendered from, 0 if unknown.
+    private final long revisionId;
+
+    public Validators(String etag, String lastModified, long revisionId) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.revisionId = revisionId;
+    }
+
+    public static Validators from(HttpHeaders headers) {
+        String etag = headers.firstValue("ETag").orElse(null);
+        return new Validators(etag, headers.firstValue("Last-Modified").orElse(null), parseRevision(etag));
+    }
+
+    // MediaWiki ETags for rendered content start with the revision ID, e.g. W/"18734/7e3c...".
+    private static long parseRevision(String etag) {
+        if (etag == null) {
+            return 0;
+        }
+
+        int start = etag.startsWith("W/") ? 2 : 0;
+        if (start < etag.length() && etag.charAt(start) == '"') {
+            start++;
+        }
+
+        long revision = 0;
+        int index = start;
+        while (index < etag.length() && Character.isDigit(etag.charAt(index)) && index - start < 18) {
+            revision = revision * 10 + (etag.charAt(index) - '0');
+            index++;
+        }
+
+        // Only trust it if it is followed by the separator.
+        return index > start && index < etag.length() && etag.charAt(index) == '/' ? revision : 0;
+    }
+
+    public Validators withRevisionId(long revisionId) {
+        return new Validators(etag, lastModified, revisionId);
+    }
+
+    // These, with whatever a 304 confirming them came with instead. Servers may send a new ETag or
+    // Last-Modified with it, which later revalidations have to ask with.
+    public Validators updatedBy(Validators confirmed) {
+        if (!confirmed.canRevalidate()) {
+            return this;
+        }
+        return new Validators(
+                confirmed.etag != null ? confirmed.etag : etag,
+                confirmed.lastModified != null ? confirmed.lastModified : lastModified,
+                confirmed.revisionId != 0 ? confirmed.revisionId : revisionId);
+    }
+
+    public boolean canRevalidate() {
+        return etag != null || lastModified != null;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getRevisionId() {
+        return revisionId;
+    }
+}
@@ -0,0 +1,729 @@
+package org.hytalewiki.net.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.hytalewiki.net.response.AllPages;
+import org.hytalewiki.net.response.PageObject;
+import org.hytalewiki.net.response.PageQueryResult;
+import org.hytalewiki.net.response.RecentChanges;
+import org.hytalewiki.net.response.SearchEntry;
+import org.hytalewiki.net.response.SearchResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+// Decodes wiki responses with hand-written streaming adapters instead of reflection.
+// Fields that weren't asked for are skipped in the reader without ever being materialized.
+// Instances are immutable and safe to share between threads.
+public class ResponseCodec {
+
+    // Everything the REST API sends.
+    public static final ResponseCodec FULL = new ResponseCodec(EnumSet.allOf(ResponseField.class));
+
+    // Everything but the large content fields the plugin never displays.
+    public static final ResponseCodec COMPACT = new ResponseCodec(EnumSet.complementOf(EnumSet.of(
+            ResponseField.HTML, ResponseField.SOURCE,
+            ResponseField.EXCERPT, ResponseField.FRAGMENT, ResponseField.THUMBNAIL)));
+
+    // Just enough to list and link results.
+    public static final ResponseCodec KEYS = new ResponseCodec(EnumSet.of(ResponseField.KEY, ResponseField.TITLE));
+
+    private final Set<ResponseField> fields;
+
+    private final Gson gson;
+
+    public ResponseCodec(Set<ResponseField> fields) {
+        this.fields = EnumSet.copyOf(fields);
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(PageObject.class, new PageObjectAdapter().nullSafe())
+                .registerTypeAdapter(SearchEntry.class, new SearchEntryAdapter().nullSafe())
+                .registerTypeAdapter(SearchResult.class, new SearchResultAdapter().nullSafe())
+                .registerTypeAdapter(PageQueryResult.class, new PageQueryResultAdapter().nullSafe())
+                .registerTypeAdapter(RecentChanges.class, new RecentChangesAdapter().nullSafe())
+                .registerTypeAdapter(AllPages.class, new AllPagesAdapter().nullSafe())
+                .create();
+    }
+
+    public <T> T decode(Reader reader, Class<T> clazz) throws JsonParseException {
+        return this.gson.fromJson(reader, clazz);
+    }
+
+    public <T> String encode(T value, Class<T> clazz) {
+        return this.gson.toJson(value, clazz);
+    }
+
+    public Set<ResponseField> getFields() {
+        return EnumSet.copyOf(fields);
+    }
+
+    private boolean wants(ResponseField field) {
+        return this.fields.contains(field);
+    }
+
+    private class PageObjectAdapter extends TypeAdapter<PageObject> {
+        @Override
+        public PageObject read(JsonReader in) throws IOException {
+            PageObject page = new PageObject();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> {
+                        if (wants(ResponseField.ID)) page.setId(nextInt(in));
+                        else in.skipValue();
+                    }
+                    case "key" -> {
+                        if (wants(ResponseField.KEY)) page.setKey(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "title" -> {
+                        if (wants(ResponseField.TITLE)) page.setTitle(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "latest" -> {
+                        if (wants(ResponseField.LATEST)) page.setLatest(readLatest(in));
+                        else in.skipValue();
+                    }
+                    case "content_model" -> {
+                        if (wants(ResponseField.CONTENT_MODEL)) page.setContentModel(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "license" -> {
+                        if (wants(ResponseField.LICENSE)) page.setLicense(readLicense(in));
+                        else in.skipValue();
+                    }
+                    case "html_url" -> {
+                        if (wants(ResponseField.HTML_URL)) page.setHtmlUrl(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "html" -> {
+                        if (wants(ResponseField.HTML)) page.setHtml(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "source" -> {
+                        if (wants(ResponseField.SOURCE)) page.setSource(nextString(in));
+                        else in.skipValue();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return page;
+        }
+
+        @Override
+        public void write(JsonWriter out, PageObject page) throws IOException {
+            out.beginObject();
+            out.name("id").value(page.getId());
+            out.name("key").value(page.getKey());
+            out.name("title").value(page.getTitle());
+            if (page.getLatest() != null) {
+                out.name("latest").beginObject()
+                        .name("id").value(page.getLatest().getId())
+                        .name("timestamp").value(page.getLatest().getTimestamp())
+                        .endObject();
+            }
+            out.name("content_model").value(page.getContentModel());
+            if (page.getLicense() != null) {
+                out.name("license").beginObject()
+                        .name("url").value(page.getLicense().getUrl())
+                        .name("title").value(page.getLicense().getTitle())
+                        .endObject();
+            }
+            out.name("html_url").value(page.getHtmlUrl());
+            out.name("html").value(page.getHtml());
+            out.name("source").value(page.getSource());
+            out.endObject();
+        }
+
+        private PageObject.Latest readLatest(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            int id = 0;
+            String timestamp = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> id = nextInt(in);
+                    case "timestamp" -> timestamp = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new PageObject.Latest(id, timestamp);
+        }
+
+        private PageObject.License readLicense(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String url = null;
+            String title = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "url" -> url = nextString(in);
+                    case "title" -> title = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new PageObject.License(url, title);
+        }
+    }
+
+    private class SearchEntryAdapter extends TypeAdapter<SearchEntry> {
+        @Override
+        public SearchEntry read(JsonReader in) throws IOException {
+            SearchEntry entry = new SearchEntry();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> {
+                        if (wants(ResponseField.ID)) entry.setId(nextInt(in));
+                        else in.skipValue();
+                    }
+                    case "key" -> {
+                        if (wants(ResponseField.KEY)) entry.setKey(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "title" -> {
+                        if (wants(ResponseField.TITLE)) entry.setTitle(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "excerpt" -> {
+                        if (wants(ResponseField.EXCERPT)) entry.setExcerpt(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "matched_title" -> {
+                        if (wants(ResponseField.MATCHED_TITLE)) entry.setMatchedTitle(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "fragment" -> {
+                        if (wants(ResponseField.FRAGMENT)) entry.setFragment(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "description" -> {
+                        if (wants(ResponseField.DESCRIPTION)) entry.setDescription(nextString(in));
+                        else in.skipValue();
+                    }
+                    case "thumbnail" -> {
+                        if (wants(ResponseField.THUMBNAIL)) entry.setThumbnail(readThumbnail(in));
+                        else in.skipValue();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return entry;
+        }
+
+        @Override
+        public void write(JsonWriter out, SearchEntry entry) throws IOException {
+            out.beginObject();
+            out.name("id").value(entry.getId());
+            out.name("key").value(entry.getKey());
+            out.name("title").value(entry.getTitle());
+            out.name("excerpt").value(entry.getExcerpt());
+            out.name("matched_title").value(entry.getMatchedTitle());
+            out.name("fragment").value(entry.getFragment());
+            out.name("description").value(entry.getDescription());
+            SearchEntry.Thumbnail thumbnail = entry.getThumbnail();
+            if (thumbnail != null) {
+                out.name("thumbnail").beginObject()
+                        .name("mimetype").value(thumbnail.getMimeType())
+                        .name("width").value(thumbnail.getWidth())
+                        .name("height").value(thumbnail.getHeight())
+                        .name("duration").value(thumbnail.getDuration())
+                        .name("url").value(thumbnail.getUrl())
+                        .endObject();
+            }
+            out.endObject();
+        }
+
+        private SearchEntry.Thumbnail readThumbnail(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            String mimeType = null;
+            int width = 0;
+            int height = 0;
+            int duration = 0;
+            String url = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "mimetype" -> mimeType = nextString(in);
+                    case "width" -> width = nextInt(in);
+                    case "height" -> height = nextInt(in);
+                    case "duration" -> duration = nextInt(in);
+                    case "url" -> url = nextString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new SearchEntry.Thumbnail(mimeType, width, height, duration, url);
+        }
+    }
+
+    private class SearchResultAdapter extends TypeAdapter<SearchResult> {
+        private final TypeAdapter<SearchEntry> entries = new SearchEntryAdapter();
+
+        @Override
+        public SearchResult read(JsonReader in) throws IOException {
+            List<SearchEntry> pages = new ArrayList<>();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("pages") && in.peek() == JsonToken.BEGIN_ARRAY) {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            continue;
+                        }
+                        pages.add(entries.read(in));
+                    }
+                    in.endArray();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new SearchResult(pages);
+        }
+
+        @Override
+        public void write(JsonWriter out, SearchResult result) throws IOException {
+            out.beginObject();
+            out.name("pages").beginArray();
+            for (SearchEntry entry : result.getPages()) {
+                entries.write(out, entry);
+            }
+            out.endArray();
+            out.endObject();
+        }
+    }
+
+    // Only reads what the REST page endpoint would have returned, the title is always needed to match pages up.
+    private class PageQueryResultAdapter extends TypeAdapter<PageQueryResult> {
+        @Override
+        public PageQueryResult read(JsonReader in) throws IOException {
+            PageQueryResult result = new PageQueryResult();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "query" -> readQuery(in, result);
+                    case "error" -> result.setError(readErrorCode(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+
+        @Override
+        public void write(JsonWriter out, PageQueryResult result) throws IOException {
+            out.beginObject();
+            out.name("query").beginObject();
+            out.name("pages").beginArray();
+            for (PageObject page : result.getPages().values()) {
+                out.beginObject()
+                        .name("pageid").value(page.getId())
+                        .name("title").value(page.getTitle());
+                if (page.getLatest() != null) {
+                    out.name("lastrevid").value(page.getLatest().getId());
+                    out.name("revisions").beginArray().beginObject()
+                            .name("revid").value(page.getLatest().getId())
+                            .name("timestamp").value(page.getLatest().getTimestamp())
+                            .endObject().endArray();
+                }
+                out.name("contentmodel").value(page.getContentModel());
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+            out.endObject();
+        }
+
+        private void readQuery(JsonReader in, PageQueryResult result) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "normalized" -> readMappings(in, result::addNormalized);
+                    case "redirects" -> readMappings(in, result::addRedirect);
+                    case "pages" -> {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            PageObject page = readPage(in);
+                            if (page != null) {
+                                result.addPage(page);
+                            }
+                        }
+                        in.endArray();
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+        }
+
+        // Null for missing and invalid titles.
+        private PageObject readPage(JsonReader in) throws IOException {
+            int id = 0;
+            String title = null;
+            int revision = 0;
+            PageObject.Latest latest = null;
+            String contentModel = null;
+            boolean exists = true;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "pageid" -> id = nextInt(in);
+                    case "title" -> title = nextString(in);
+                    case "lastrevid" -> revision = nextInt(in);
+                    case "revisions" -> latest = readRevisions(in);
+                    case "contentmodel" -> contentModel = nextString(in);
+                    case "missing", "invalid" -> {
+                        in.skipValue();
+                        exists = false;
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (!exists || title == null) {
+                return null;
+            }
+
+            PageObject page = new PageObject();
+            // Always set, PageQueryResult matches pages by title.
+            page.setTitle(title);
+            if (wants(ResponseField.ID)) page.setId(id);
+            if (wants(ResponseField.KEY)) page.setKey(title.replace(" ", "_"));
+            // touched changes on every re-render, e.g. when a template the page uses is edited, so the time of
+            // the latest revision comes from the revision itself, like for single pages.
+            if (wants(ResponseField.LATEST)) page.setLatest(latest != null ? latest : new PageObject.Latest(revision, null));
+            if (wants(ResponseField.CONTENT_MODEL)) page.setContentModel(contentModel);
+            return page;
+        }
+
+        // The latest revision, the only one asked for, or null if there is none.
+        private PageObject.Latest readRevisions(JsonReader in) throws IOException {
+            PageObject.Latest latest = null;
+
+            in.beginArray();
+            while (in.hasNext()) {
+                int id = 0;
+                String timestamp = null;
+
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "revid" -> id = nextInt(in);
+                        case "timestamp" -> timestamp = nextString(in);
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+
+                if (latest == null) {
+                    latest = new PageObject.Latest(id, timestamp);
+                }
+            }
+            in.endArray();
+            return latest;
+        }
+
+        private void readMappings(JsonReader in, BiConsumer<String, String> consumer) throws IOException {
+            in.beginArray();
+            while (in.hasNext()) {
+                String from = null;
+                String to = null;
+
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "from" -> from = nextString(in);
+                        case "to" -> to = nextString(in);
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+
+                if (from != null && to != null) {
+                    consumer.accept(from, to);
+                }
+            }
+            in.endArray();
+        }
+    }
+
+    // Titles only.
+    private static class AllPagesAdapter extends TypeAdapter<AllPages> {
+        @Override
+        public AllPages read(JsonReader in) throws IOException {
+            AllPages result = new AllPages();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "continue" -> result.setContinueToken(readContinueToken(in, "apcontinue"));
+                    case "query" -> readQuery(in, result);
+                    case "error" -> result.setError(readErrorCode(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+
+        @Override
+        public void write(JsonWriter out, AllPages result) throws IOException {
+            out.beginObject();
+            if (result.getContinueToken() != null) {
+                out.name("continue").beginObject()
+                        .name("apcontinue").value(result.getContinueToken())
+                        .name("continue").value("-||")
+                        .endObject();
+            }
+            out.name("query").beginObject();
+            out.name("allpages").beginArray();
+            for (String title : result.getTitles()) {
+                out.beginObject()
+                        .name("title").value(title)
+                        .endObject();
+            }
+            out.endArray();
+            out.endObject();
+            out.endObject();
+        }
+
+        private void readQuery(JsonReader in, AllPages result) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("allpages")) {
+                    in.skipValue();
+                    continue;
+                }
+
+                in.beginArray();
+                while (in.hasNext()) {
+                    String title = null;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        if (in.nextName().equals("title")) {
+                            title = nextString(in);
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endObject();
+
+                    if (title != null) {
+                        result.addTitle(title);
+                    }
+                }
+                in.endArray();
+            }
+            in.endObject();
+        }
+    }
+
+    // Only what's needed to tell which pages changed, oldest first as asked for with rcdir=newer.
+    private static class RecentChangesAdapter extends TypeAdapter<RecentChanges> {
+        @Override
+        public RecentChanges read(JsonReader in) throws IOException {
+            RecentChanges result = new RecentChanges();
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "continue" -> result.setContinueToken(readContinueToken(in, "rccontinue"));
+                    case "query" -> readQuery(in, result);
+                    case "error" -> result.setError(readErrorCode(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+
+        @Override
+        public void write(JsonWriter out, RecentChanges result) throws IOException {
+            out.beginObject();
+            if (result.getContinueToken() != null) {
+                out.name("continue").beginObject()
+                        .name("rccontinue").value(result.getContinueToken())
+                        .name("continue").value("-||")
+                        .endObject();
+            }
+            out.name("query").beginObject();
+            out.name("recentchanges").beginArray();
+            for (RecentChanges.Change change : result.getChanges()) {
+                out.beginObject()
+                        .name("type").value(change.type())
+                        .name("title").value(change.title())
+                        .name("rcid").value(change.id())
+                        .name("timestamp").value(change.timestamp());
+                if (change.logType() != null) {
+                    out.name("logtype").value(change.logType());
+                }
+                if (change.target() != null) {
+                    out.name("logparams").beginObject()
+                            .name("target_title").value(change.target())
+                            .endObject();
+                }
+                out.endObject();
+            }
+            out.endArray();
+            out.endObject();
+            out.endObject();
+        }
+
+        private void readQuery(JsonReader in, RecentChanges result) throws IOException {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!in.nextName().equals("recentchanges")) {
+                    in.skipValue();
+                    continue;
+                }
+
+                in.beginArray();
+                while (in.hasNext()) {
+                    RecentChanges.Change change = readChange(in);
+                    if (change != null) {
+                        result.addChange(change);
+                    }
+                }
+                in.endArray();
+            }
+            in.endObject();
+        }
+
+        // Null for entries without a title, e.g. hidden log entries.
+        private RecentChanges.Change readChange(JsonReader in) throws IOException {
+            long id = 0;
+            String type = null;
+            String logType = null;
+            String title = null;
+            String timestamp = null;
+            String target = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "rcid" -> id = nextLong(in);
+                    case "type" -> type = nextString(in);
+                    case "logtype" -> logType = nextString(in);
+                    case "title" -> title = nextString(in);
+                    case "timestamp" -> timestamp = nextString(in);
+                    case "logparams" -> target = readTargetTitle(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            return title != null ? new RecentChanges.Change(id, type, logType, title, timestamp, target) : null;
+        }
+
+        // The target of a move, null for other log entries. Without formatversion=2 logparams may be an array.
+        private String readTargetTitle(JsonReader in) throws IOException {
+            if (in.peek() != JsonToken.BEGIN_OBJECT) {
+                in.skipValue();
+                return null;
+            }
+
+            String target = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("target_title")) {
+                    target = nextString(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return target;
+        }
+    }
+
+    // The value of the named continuation parameter in an action API "continue" object.
+    private static String readContinueToken(JsonReader in, String name) throws IOException {
+        String token = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals(name)) {
+                token = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return token;
+    }
+
+    private static String readErrorCode(JsonReader in) throws IOException {
+        String code = "unknown";
+
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("code")) {
+                code = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return code;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static int nextInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextInt();
+    }
+
+    private static long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextLong();
+    }
+}
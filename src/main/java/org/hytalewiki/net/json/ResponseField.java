@@ -0,0 +1,33 @@
+package org.hytalewiki.net.json;
+
+// Fields of PageObject and SearchEntry a ResponseCodec can be asked to decode, by their name on the wire.
+public enum ResponseField {
+    ID("id"),
+    KEY("key"),
+    TITLE("title"),
+
+    // PageObject
+    LATEST("latest"),
+    CONTENT_MODEL("content_model"),
+    LICENSE("license"),
+    HTML_URL("html_url"),
+    HTML("html"),
+    SOURCE("source"),
+
+    // SearchEntry
+    EXCERPT("excerpt"),
+    MATCHED_TITLE("matched_title"),
+    FRAGMENT("fragment"),
+    DESCRIPTION("description"),
+    THUMBNAIL("thumbnail");
+
+    private final String jsonName;
+
+    ResponseField(String jsonName) {
+        this.jsonName = jsonName;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+}
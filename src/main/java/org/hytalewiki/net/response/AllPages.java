@@ -0,0 +1,45 @@
+package org.hytalewiki.net.response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Result of an action=query&list=allpages request against the MediaWiki action API, one batch of titles
+// in alphabetical order.
+public class AllPages {
+
+    private final List<String> titles = new ArrayList<>();
+
+    // Where to continue if there are more titles, null after the last batch.
+    private String continueToken;
+
+    // Error code if the API refused the query.
+    private String error;
+
+    public AllPages() {
+    }
+
+    public void addTitle(String title) {
+        titles.add(title);
+    }
+
+    public List<String> getTitles() {
+        return Collections.unmodifiableList(titles);
+    }
+
+    public String getContinueToken() {
+        return continueToken;
+    }
+
+    public void setContinueToken(String continueToken) {
+        this.continueToken = continueToken;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -25,6 +25,11 @@ public class PageObject {
             // gson
         }
 
+        public License(String url, String title) {
+            this.url = url;
+            this.title = title;
+        }
+
         public String getUrl() {
             return url;
         }
@@ -42,6 +47,11 @@ public class PageObject {
             // gson
         }
 
+        public Latest(int id, String timestamp) {
+            this.id = id;
+            this.timestamp = timestamp;
+        }
+
         public int getId() {
             return id;
         }
@@ -55,35 +65,71 @@ public class PageObject {
         return id;
     }
 
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getKey() {
         return key;
     }
 
+    public void setKey(String key) {
+        this.key = key;
+    }
+
     public String getTitle() {
         return title;
     }
 
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
     public Latest getLatest() {
         return latest;
     }
 
+    public void setLatest(Latest latest) {
+        this.latest = latest;
+    }
+
     public String getContentModel() {
         return contentModel;
     }
 
+    public void setContentModel(String contentModel) {
+        this.contentModel = contentModel;
+    }
+
     public License getLicense() {
         return license;
     }
 
+    public void setLicense(License license) {
+        this.license = license;
+    }
+
     public String getHtmlUrl() {
         return htmlUrl;
     }
 
+    public void setHtmlUrl(String htmlUrl) {
+        this.htmlUrl = htmlUrl;
+    }
+
     public String getHtml() {
         return html;
     }
 
+    public void setHtml(String html) {
+        this.html = html;
+    }
+
     public String getSource() {
         return source;
     }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
 }
@@ -0,0 +1,53 @@
+package org.hytalewiki.net.response;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Result of an action=query&titles=... request against the MediaWiki action API.
+public class PageQueryResult {
+    private final Map<String, String> normalized = new HashMap<>();
+    private final Map<String, String> redirects = new HashMap<>();
+
+    // Existing pages by title, missing and invalid titles aren't in here.
+    private final Map<String, PageObject> pages = new HashMap<>();
+
+    // Error code if the API refused the query.
+    private String error;
+
+    public PageQueryResult() {
+    }
+
+    // Find the page for a title as it was asked for, following normalization and redirects the way
+    // the REST page endpoint does. Titles that don't exist get a page without key, like a REST 404.
+    public PageObject resolve(String title) {
+        String normalizedTitle = normalized.getOrDefault(title, title);
+        String target = redirects.getOrDefault(normalizedTitle, normalizedTitle);
+
+        PageObject page = pages.get(target);
+        return page != null ? page : new PageObject();
+    }
+
+    public void addNormalized(String from, String to) {
+        normalized.put(from, to);
+    }
+
+    public void addRedirect(String from, String to) {
+        redirects.put(from, to);
+    }
+
+    public void addPage(PageObject page) {
+        pages.put(page.getTitle(), page);
+    }
+
+    public Map<String, PageObject> getPages() {
+        return pages;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
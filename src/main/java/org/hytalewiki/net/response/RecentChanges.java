@@ -0,0 +1,49 @@
+package org.hytalewiki.net.response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Result of an action=query&list=recentchanges request against the MediaWiki action API, oldest change first.
+public class RecentChanges {
+
+    // One edit, page creation or log entry. Log entries have a log type, e.g. "move" or "delete",
+    // and for moves, target is the title the page was moved to.
+    public record Change(long id, String type, String logType, String title, String timestamp, String target) {
+    }
+
+    private final List<Change> changes = new ArrayList<>();
+
+    // Where to continue if there were more changes than asked for, null otherwise.
+    private String continueToken;
+
+    // Error code if the API refused the query.
+    private String error;
+
+    public RecentChanges() {
+    }
+
+    public void addChange(Change change) {
+        changes.add(change);
+    }
+
+    public List<Change> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    public String getContinueToken() {
+        return continueToken;
+    }
+
+    public void setContinueToken(String continueToken) {
+        this.continueToken = continueToken;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
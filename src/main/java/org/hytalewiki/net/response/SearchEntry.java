@@ -97,6 +97,14 @@ public class SearchEntry {
             // gson
         }
 
+        public Thumbnail(String mimeType, int width, int height, int duration, String url) {
+            this.mimeType = mimeType;
+            this.width = width;
+            this.height = height;
+            this.duration = duration;
+            this.url = url;
+        }
+
         public String getMimeType() {
             return mimeType;
         }
@@ -10,6 +10,10 @@ public class SearchResult {
     public SearchResult() {
     }
 
+    public SearchResult(List<SearchEntry> pages) {
+        this.pages = new ArrayList<>(pages);
+    }
+
     public List<SearchEntry> getPages() {
         return Collections.unmodifiableList(pages);
     }
@@ -0,0 +1,243 @@
+package org.hytalewiki.net.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable trigram index over page titles for resolving near-misses, "Iorn Shovel" to "Iron Shovel", without
+// asking the wiki. Trigrams are hashed to 31 bits and kept in a sorted array with flat postings, like
+// SearchIndex terms. Titles are numbered shortest first, so the postings of titles about as long as the text
+// are a range found by binary search. A lookup counts the trigrams each of those shares with the text, which
+// bounds how few edits apart they can be, and only measures the edit distance of titles that pass that bound.
+public final class FuzzyTitleIndex {
+
+    public static final FuzzyTitleIndex EMPTY = of(List.of(), 0);
+
+    private final int maxDistance;
+
+    // Ordered by the length of their normalized forms.
+    private final String[] titles;
+    private final String[] normalized;
+    private final int[] lengths;
+
+    // Sorted, the titles containing trigrams[i] are postings[offsets[i]..offsets[i + 1]).
+    private final long[] trigrams;
+    private final int[] offsets;
+    private final int[] postings;
+
+    private FuzzyTitleIndex(int maxDistance, String[] titles, String[] normalized, long[] trigrams, int[] offsets, int[] postings) {
+        this.maxDistance = maxDistance;
+        this.titles = titles;
+        this.normalized = normalized;
+        this.lengths = Arrays.stream(normalized).mapToInt(String::length).toArray();
+        this.trigrams = trigrams;
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+    // Titles that only differ in case or underscores are kept once, the first of them. Near-misses are at
+    // most maxDistance edits away, fewer for short text, see allowedDistance.
+    public static FuzzyTitleIndex of(Collection<String> titles, int maxDistance) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (String title : titles) {
+            if (title != null && !title.isBlank()) {
+                unique.putIfAbsent(TitleIndex.normalize(title).strip(), title);
+            }
+        }
+        List<Map.Entry<String, String>> sorted = new ArrayList<>(unique.entrySet());
+        sorted.sort(Comparator.comparingInt(entry -> entry.getKey().length()));
+        String[] kept = new String[sorted.size()];
+        String[] normalized = new String[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            normalized[i] = sorted.get(i).getKey();
+            kept[i] = sorted.get(i).getValue();
+        }
+
+        // Every (trigram, title) pair, packed so sorting groups them by trigram and then title.
+        long[] pairs = new long[0];
+        int count = 0;
+        for (int i = 0; i < normalized.length; i++) {
+            long[] grams = trigrams(normalized[i]);
+            if (count + grams.length > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(count + grams.length, pairs.length * 2));
+            }
+            for (long gram : grams) {
+                pairs[count++] = gram << 32 | i;
+            }
+        }
+        Arrays.sort(pairs, 0, count);
+
+        List<Long> keys = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        int[] postings = new int[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            long gram = pairs[i] >>> 32;
+            int title = (int) pairs[i];
+            if (keys.isEmpty() || keys.getLast() != gram) {
+                keys.add(gram);
+                starts.add(size);
+            } else if (postings[size - 1] == title) {
+                // The trigram occurs twice in the title.
+                continue;
+            }
+            postings[size++] = title;
+        }
+
+        long[] trigrams = keys.stream().mapToLong(Long::longValue).toArray();
+        int[] offsets = new int[trigrams.length + 1];
+        for (int i = 0; i < trigrams.length; i++) {
+            offsets[i] = starts.get(i);
+        }
+        offsets[trigrams.length] = size;
+        return new FuzzyTitleIndex(maxDistance, kept, normalized, trigrams, offsets, Arrays.copyOf(postings, size));
+    }
+
+    // The title closest to the text, or null if none is within the allowed distance. The fewest edits win,
+    // then the most trigrams in common. A title matching but for case and underscores is distance 0.
+    public String resolve(String text) {
+        String query = TitleIndex.normalize(text).strip();
+        int allowed = allowedDistance(query.length());
+        if (query.isEmpty() || titles.length == 0) {
+            return null;
+        }
+
+        // Titles first to last are those within allowed of the text's length.
+        int first = lowerBound(lengths, 0, lengths.length, query.length() - allowed);
+        int last = lowerBound(lengths, first, lengths.length, query.length() + allowed + 1);
+        if (first == last) {
+            return null;
+        }
+
+        long[] grams = trigrams(query);
+        int[] shared = new int[last - first];
+        int[] touched = new int[Math.min(shared.length, 256)];
+        int touchedCount = 0;
+        for (long gram : grams) {
+            int index = Arrays.binarySearch(trigrams, gram);
+            if (index < 0) {
+                continue;
+            }
+            for (int i = lowerBound(postings, offsets[index], offsets[index + 1], first); i < offsets[index + 1]; i++) {
+                int title = postings[i] - first;
+                if (title >= shared.length) {
+                    break;
+                }
+                if (shared[title]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touched.length * 2);
+                    }
+                    touched[touchedCount++] = title;
+                }
+            }
+        }
+
+        int best = -1;
+        int bestDistance = allowed + 1;
+        int bestShared = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int title = touched[i];
+            // Each edit breaks at most four trigrams, a swap changes two chars, so fewer in common means
+            // more edits than allowed.
+            if (shared[title] < Math.max(lengths[first + title], query.length()) + 1 - 4 * allowed) {
+                continue;
+            }
+            int distance = distance(query, normalized[first + title], Math.min(allowed, bestDistance));
+            if (distance < bestDistance || (distance == bestDistance && shared[title] > bestShared)) {
+                best = first + title;
+                bestDistance = distance;
+                bestShared = shared[title];
+            }
+        }
+        return best >= 0 && bestDistance <= allowed ? titles[best] : null;
+    }
+
+    // Index of the first of sorted[from..to) not less than value.
+    private static int lowerBound(int[] sorted, int from, int to, int value) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Short text leaves little to go on, "Iron" one edit from "Iorn" is fine, "Ore" from "Orb" isn't.
+    private int allowedDistance(int length) {
+        return Math.min(maxDistance, length / 4);
+    }
+
+    // Optimal string alignment distance, swapping two neighbours counts as one edit. Anything over
+    // bound is returned as bound + 1, so each row only needs the cells within bound of the diagonal,
+    // those either side of them hold bound + 1. Rows stop early: once two rows in a row are over bound,
+    // as a swap looks back two rows, so is every one after them.
+    static int distance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = Math.min(j, bound + 1);
+        }
+
+        int previousMinimum = 0;
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - bound);
+            int to = Math.min(b.length(), i + bound);
+            current[from - 1] = from == 1 ? Math.min(i, bound + 1) : bound + 1;
+            if (to < b.length()) {
+                current[to + 1] = bound + 1;
+            }
+
+            int rowMinimum = current[from - 1];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMinimum = Math.min(rowMinimum, value);
+            }
+            if (rowMinimum > bound && previousMinimum > bound) {
+                return bound + 1;
+            }
+            previousMinimum = rowMinimum;
+
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], bound + 1);
+    }
+
+    // Hashed trigrams of the text padded with two spaces in front and one behind, one per char and the end.
+    // 31 bit values, so they pack into the upper half of a long without turning it negative and sort the
+    // same either way. Collisions only let a few more titles through to the edit distance check.
+    private static long[] trigrams(String text) {
+        String padded = "  " + text + " ";
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            long packed = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+            grams[i] = packed * 0x9E3779B97F4A7C15L >>> 33;
+        }
+        return grams;
+    }
+
+    public int size() {
+        return titles.length;
+    }
+}
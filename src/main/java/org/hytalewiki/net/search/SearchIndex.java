@@ -0,0 +1,417 @@
+package org.hytalewiki.net.search;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.hytalewiki.net.response.SearchEntry;
+import org.hytalewiki.net.response.SearchResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Immutable inverted index over page titles and plain text, ranked with BM25, so searches can be
+// answered without the wiki. Postings are kept in flat arrays and terms in a sorted array, a lookup
+// is a binary search per query term and a pass over its postings.
+// Built from a snapshot of the wiki, see fromSnapshot(), and stored on disk in a compact binary form.
+public final class SearchIndex {
+
+    private static final int MAGIC = 0x48574958;
+    private static final int VERSION = 1;
+
+    // A title occurrence counts as this many occurrences in the text.
+    private static final int TITLE_WEIGHT = 3;
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final Gson GSON = new Gson();
+
+    private final int[] ids;
+    private final String[] keys;
+    private final String[] titles;
+
+    // Weighted token count per document.
+    private final int[] lengths;
+    private final float averageLength;
+
+    // Sorted, the postings of terms[i] are docs/freqs[offsets[i]..offsets[i + 1]).
+    private final String[] terms;
+    private final int[] offsets;
+    private final int[] docs;
+    private final int[] freqs;
+
+    // Normalized title to document, an exact title match always ranks first.
+    private final Map<String, Integer> exactTitles;
+
+    private SearchIndex(int[] ids, String[] keys, String[] titles, int[] lengths,
+                        String[] terms, int[] offsets, int[] docs, int[] freqs) {
+        this.ids = ids;
+        this.keys = keys;
+        this.titles = titles;
+        this.lengths = lengths;
+        this.terms = terms;
+        this.offsets = offsets;
+        this.docs = docs;
+        this.freqs = freqs;
+
+        long total = 0;
+        for (int length : lengths) {
+            total += length;
+        }
+        this.averageLength = lengths.length == 0 ? 1 : Math.max(1, (float) total / lengths.length);
+
+        this.exactTitles = new HashMap<>(titles.length * 2);
+        for (int doc = 0; doc < titles.length; doc++) {
+            this.exactTitles.putIfAbsent(normalize(Tokenizer.tokenize(titles[doc])), doc);
+        }
+    }
+
+    public SearchResult search(String query, int limit) {
+        List<String> tokens = Tokenizer.tokenize(query);
+        if (tokens.isEmpty() || keys.length == 0 || limit <= 0) {
+            return new SearchResult();
+        }
+
+        float[] scores = new float[keys.length];
+        int[] candidates = new int[16];
+        int candidateCount = 0;
+
+        for (String token : new LinkedHashSet<>(tokens)) {
+            int term = Arrays.binarySearch(terms, token);
+            if (term < 0) {
+                continue;
+            }
+
+            int from = offsets[term];
+            int to = offsets[term + 1];
+            float idf = (float) Math.log(1 + (keys.length - (to - from) + 0.5) / ((to - from) + 0.5));
+
+            for (int i = from; i < to; i++) {
+                int doc = docs[i];
+                float tf = freqs[i];
+                float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+
+                if (scores[doc] == 0) {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = doc;
+                }
+                scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        Integer exact = exactTitles.get(normalize(tokens));
+        if (exact != null && scores[exact] > 0) {
+            scores[exact] = Float.POSITIVE_INFINITY;
+        }
+
+        // Insertion into the best few, candidates are usually far more than the limit.
+        int[] top = new int[Math.min(limit, candidateCount)];
+        int topCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int doc = candidates[i];
+            float score = scores[doc];
+            if (topCount == top.length && score <= scores[top[topCount - 1]]) {
+                continue;
+            }
+
+            int position = topCount == top.length ? topCount - 1 : topCount++;
+            while (position > 0 && scores[top[position - 1]] < score) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = doc;
+        }
+
+        List<SearchEntry> entries = new ArrayList<>(topCount);
+        for (int i = 0; i < topCount; i++) {
+            entries.add(toEntry(top[i]));
+        }
+        return new SearchResult(entries);
+    }
+
+    // Whether search would find anything for the query, without scoring a single page. Every indexed term
+    // has pages, so any of the query's terms being indexed is enough.
+    public boolean matches(String query) {
+        if (keys.length == 0) {
+            return false;
+        }
+        for (String token : Tokenizer.tokenize(query)) {
+            if (Arrays.binarySearch(terms, token) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private SearchEntry toEntry(int doc) {
+        SearchEntry entry = new SearchEntry();
+        entry.setId(ids[doc]);
+        entry.setKey(keys[doc]);
+        entry.setTitle(titles[doc]);
+        return entry;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    private static String normalize(List<String> tokens) {
+        return String.join(" ", tokens);
+    }
+
+    // Write to a temporary file next to the target first, so a crash never leaves half an index behind.
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            writeVarInt(out, keys.length);
+            for (int doc = 0; doc < keys.length; doc++) {
+                writeVarInt(out, ids[doc]);
+                out.writeUTF(keys[doc]);
+                out.writeUTF(titles[doc]);
+                writeVarInt(out, lengths[doc]);
+            }
+
+            // Documents are in ascending order within a term, so only the gaps are stored.
+            writeVarInt(out, terms.length);
+            for (int term = 0; term < terms.length; term++) {
+                out.writeUTF(terms[term]);
+                writeVarInt(out, offsets[term + 1] - offsets[term]);
+                int previous = 0;
+                for (int i = offsets[term]; i < offsets[term + 1]; i++) {
+                    writeVarInt(out, docs[i] - previous);
+                    writeVarInt(out, freqs[i]);
+                    previous = docs[i];
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static SearchIndex read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a search index or an unsupported version: " + file);
+            }
+
+            int documentCount = readVarInt(in);
+            int[] ids = new int[documentCount];
+            String[] keys = new String[documentCount];
+            String[] titles = new String[documentCount];
+            int[] lengths = new int[documentCount];
+            for (int doc = 0; doc < documentCount; doc++) {
+                ids[doc] = readVarInt(in);
+                keys[doc] = in.readUTF();
+                titles[doc] = in.readUTF();
+                lengths[doc] = readVarInt(in);
+            }
+
+            int termCount = readVarInt(in);
+            String[] terms = new String[termCount];
+            int[] offsets = new int[termCount + 1];
+            int[] docs = new int[Math.max(16, termCount * 2)];
+            int[] freqs = new int[docs.length];
+            int postingCount = 0;
+            for (int term = 0; term < termCount; term++) {
+                terms[term] = in.readUTF();
+                int count = readVarInt(in);
+                if (postingCount + count > docs.length) {
+                    int capacity = Math.max(docs.length * 2, postingCount + count);
+                    docs = Arrays.copyOf(docs, capacity);
+                    freqs = Arrays.copyOf(freqs, capacity);
+                }
+
+                int doc = 0;
+                for (int i = 0; i < count; i++) {
+                    doc += readVarInt(in);
+                    if (doc >= documentCount) {
+                        throw new IOException("Corrupt search index: " + file);
+                    }
+                    docs[postingCount] = doc;
+                    freqs[postingCount] = readVarInt(in);
+                    postingCount++;
+                }
+                offsets[term + 1] = postingCount;
+            }
+
+            return new SearchIndex(ids, keys, titles, lengths, terms, offsets,
+                    Arrays.copyOf(docs, postingCount), Arrays.copyOf(freqs, postingCount));
+        }
+    }
+
+    // The index stored at indexFile, rebuilt from the snapshot first if the snapshot is newer.
+    // Null if there is neither.
+    public static SearchIndex open(Path snapshot, Path indexFile) throws IOException {
+        boolean hasSnapshot = Files.exists(snapshot);
+        if (Files.exists(indexFile) && (!hasSnapshot
+                || Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(snapshot)) >= 0)) {
+            return read(indexFile);
+        }
+        if (!hasSnapshot) {
+            return null;
+        }
+
+        SearchIndex index = fromSnapshot(snapshot);
+        index.write(indexFile);
+        return index;
+    }
+
+    // One page of a snapshot, a JSON object per line. The key defaults to the title.
+    private static class SnapshotPage {
+        private int id;
+        private String key;
+        private String title;
+        private String text;
+    }
+
+    // Index a wiki snapshot in JSON Lines form: {"id": 1, "key": "Iron_Ore", "title": "Iron Ore", "text": "..."}
+    public static SearchIndex fromSnapshot(Path file) throws IOException {
+        Builder builder = new Builder();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                SnapshotPage page;
+                try {
+                    page = GSON.fromJson(line, SnapshotPage.class);
+                } catch (JsonParseException e) {
+                    throw new IOException("Malformed snapshot line " + number + " in " + file, e);
+                }
+                if (page == null || page.title == null) {
+                    continue;
+                }
+                builder.add(page.id, page.key != null ? page.key : page.title.replace(' ', '_'), page.title, page.text);
+            }
+        }
+        return builder.build();
+    }
+
+    public static class Builder {
+        private final List<Integer> ids = new ArrayList<>();
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> titles = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+
+        private final Set<String> seenKeys = new HashSet<>();
+
+        // Term to alternating document and frequency, in the order documents were added.
+        private final Map<String, Postings> postings = new HashMap<>();
+
+        private static class Postings {
+            int[] values = new int[4];
+            int size;
+
+            void add(int doc, int freq) {
+                if (size + 2 > values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[size++] = doc;
+                values[size++] = freq;
+            }
+        }
+
+        // Pages with a key that was already added are skipped.
+        public Builder add(int id, String key, String title, String text) {
+            if (!seenKeys.add(key)) {
+                return this;
+            }
+
+            Map<String, Integer> counts = new HashMap<>();
+            int length = 0;
+            for (String token : Tokenizer.tokenize(title)) {
+                counts.merge(token, TITLE_WEIGHT, Integer::sum);
+                length += TITLE_WEIGHT;
+            }
+            if (text != null) {
+                for (String token : Tokenizer.tokenize(text)) {
+                    counts.merge(token, 1, Integer::sum);
+                    length++;
+                }
+            }
+
+            int doc = keys.size();
+            ids.add(id);
+            keys.add(key);
+            titles.add(title);
+            lengths.add(length);
+            counts.forEach((token, count) -> postings.computeIfAbsent(token, t -> new Postings()).add(doc, count));
+            return this;
+        }
+
+        public SearchIndex build() {
+            String[] terms = postings.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+
+            int total = 0;
+            for (Postings list : postings.values()) {
+                total += list.size / 2;
+            }
+
+            int[] offsets = new int[terms.length + 1];
+            int[] docs = new int[total];
+            int[] freqs = new int[total];
+            int position = 0;
+            for (int term = 0; term < terms.length; term++) {
+                Postings list = postings.get(terms[term]);
+                for (int i = 0; i < list.size; i += 2) {
+                    docs[position] = list.values[i];
+                    freqs[position] = list.values[i + 1];
+                    position++;
+                }
+                offsets[term + 1] = position;
+            }
+
+            return new SearchIndex(ids.stream().mapToInt(Integer::intValue).toArray(), keys.toArray(new String[0]),
+                    titles.toArray(new String[0]), lengths.stream().mapToInt(Integer::intValue).toArray(),
+                    terms, offsets, docs, freqs);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in search index");
+    }
+}
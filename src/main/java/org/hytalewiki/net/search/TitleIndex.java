@@ -0,0 +1,128 @@
+package org.hytalewiki.net.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Immutable prefix index over page titles for completing what a player has typed so far. Titles and the
+// later words of each title are kept in sorted arrays of their normalized forms, a lookup is a binary
+// search and a scan over at most limit matches in each. "iron" completes to "Iron Ore", and so does "ore".
+public final class TitleIndex {
+
+    public static final TitleIndex EMPTY = of(List.of());
+
+    // Sorted by their normalized forms.
+    private final String[] titles;
+    private final String[] normalized;
+
+    // Sorted normalized title suffixes starting at a later word, words[i] is part of titles[owners[i]].
+    private final String[] words;
+    private final int[] owners;
+
+    private TitleIndex(String[] titles, String[] normalized, String[] words, int[] owners) {
+        this.titles = titles;
+        this.normalized = normalized;
+        this.words = words;
+        this.owners = owners;
+    }
+
+    // Titles that only differ in case or underscores are kept once, the first of them.
+    public static TitleIndex of(Collection<String> titles) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (String title : titles) {
+            if (title != null && !title.isBlank()) {
+                unique.putIfAbsent(normalize(title).strip(), title);
+            }
+        }
+
+        List<Map.Entry<String, String>> sorted = new ArrayList<>(unique.entrySet());
+        sorted.sort(Map.Entry.comparingByKey());
+        String[] kept = new String[sorted.size()];
+        String[] normalized = new String[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            normalized[i] = sorted.get(i).getKey();
+            kept[i] = sorted.get(i).getValue();
+        }
+
+        // Titles are in order already, so sorting by word alone keeps ties in title order.
+        List<Word> starts = new ArrayList<>();
+        for (int i = 0; i < normalized.length; i++) {
+            String title = normalized[i];
+            for (int j = 1; j < title.length(); j++) {
+                if (title.charAt(j - 1) == ' ' && title.charAt(j) != ' ') {
+                    starts.add(new Word(title.substring(j), i));
+                }
+            }
+        }
+        starts.sort(Comparator.comparing(Word::word));
+
+        String[] words = new String[starts.size()];
+        int[] owners = new int[starts.size()];
+        for (int i = 0; i < starts.size(); i++) {
+            words[i] = starts.get(i).word();
+            owners[i] = starts.get(i).owner();
+        }
+        return new TitleIndex(kept, normalized, words, owners);
+    }
+
+    private record Word(String word, int owner) {
+    }
+
+    // Up to limit titles starting with the text, then ones with a later word starting with it, each
+    // group in alphabetical order. Nothing for blank text.
+    public List<String> complete(String text, int limit) {
+        // A trailing space is kept, "iron " only completes to titles with more words after "iron".
+        String prefix = normalize(text).stripLeading();
+        if (prefix.isBlank() || limit <= 0) {
+            return List.of();
+        }
+
+        List<String> completions = new ArrayList<>(limit);
+        for (int i = lowerBound(normalized, prefix); i < normalized.length && completions.size() < limit; i++) {
+            if (!normalized[i].startsWith(prefix)) {
+                break;
+            }
+            completions.add(titles[i]);
+        }
+
+        for (int i = lowerBound(words, prefix); i < words.length && completions.size() < limit; i++) {
+            if (!words[i].startsWith(prefix)) {
+                break;
+            }
+            // Titles starting with the text were all added above, and one may have several matching words.
+            int owner = owners[i];
+            if (!normalized[owner].startsWith(prefix) && !completions.contains(titles[owner])) {
+                completions.add(titles[owner]);
+            }
+        }
+        return completions;
+    }
+
+    // Index of the first element not less than prefix. Words repeat, so Arrays.binarySearch won't do.
+    private static int lowerBound(String[] sorted, String prefix) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public int size() {
+        return titles.length;
+    }
+
+    // Lower case, with underscores as in page keys read as spaces.
+    static String normalize(String title) {
+        return title.replace('_', ' ').toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,135 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.FakeWikiServer;
+import org.hytalewiki.net.RetryPolicy;
+import org.hytalewiki.net.WikiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoverageAuditTests {
+
+    private FakeWikiServer server;
+
+    private WikiClient client;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        this.server = new FakeWikiServer();
+        this.client = new WikiClient(server.getBaseUrl());
+        this.client.setRetryPolicy(RetryPolicy.none());
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.server.close();
+    }
+
+    @Test
+    public void findsPresentRedirectedAndMissingPages() {
+        server.titles("Iron Ore", "Iron Sword", "Copper Ore");
+        server.redirect("Copper Ore Chunk", "Copper Ore");
+
+        CoverageAudit.Report report = new CoverageAudit(client, null, 50, 4).run(List.of(
+                new CoverageAudit.Asset("Ore_Iron", "Iron Ore"),
+                new CoverageAudit.Asset("Ore_Iron_Deep", "Iron Ore"),
+                new CoverageAudit.Asset("Ore_Copper", "Copper Ore Chunk"),
+                new CoverageAudit.Asset("Weapon_Sword_Iron", "iron_Sword"),
+                new CoverageAudit.Asset("Weapon_Axe_Iron", "Iron Axe")), progress -> {
+        }).join();
+
+        assertEquals(List.of(
+                new CoverageAudit.Row("Weapon_Axe_Iron", "Iron Axe", CoverageAudit.Status.MISSING, null),
+                new CoverageAudit.Row("Ore_Copper", "Copper Ore Chunk", CoverageAudit.Status.REDIRECTED, "Copper Ore"),
+                new CoverageAudit.Row("Ore_Iron", "Iron Ore", CoverageAudit.Status.PRESENT, null),
+                new CoverageAudit.Row("Ore_Iron_Deep", "Iron Ore", CoverageAudit.Status.PRESENT, null),
+                new CoverageAudit.Row("Weapon_Sword_Iron", "iron_Sword", CoverageAudit.Status.PRESENT, null)), report.rows());
+        assertEquals(4, report.titles());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void checksTitlesInBatchesAndReportsProgress() {
+        List<String> titles = new ArrayList<>();
+        List<CoverageAudit.Asset> assets = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            titles.add("Page " + i);
+            assets.add(new CoverageAudit.Asset("Item_" + i, "Page " + i));
+        }
+        server.titles(titles.subList(0, 100).toArray(String[]::new));
+
+        List<CoverageAudit.Progress> progress = new CopyOnWriteArrayList<>();
+        CoverageAudit.Report report = new CoverageAudit(client, null, 50, 2).run(assets, progress::add).join();
+
+        assertEquals(3, server.getRequestCount());
+        assertEquals(100, report.count(CoverageAudit.Status.PRESENT));
+        assertEquals(20, report.count(CoverageAudit.Status.MISSING));
+        assertFalse(progress.isEmpty());
+        assertEquals(120, progress.getLast().checked());
+        assertEquals(20, progress.getLast().missing());
+    }
+
+    @Test
+    public void recordsBatchesThatFailed() {
+        server.titles("Iron Ore");
+        server.failNext(1, 500);
+
+        CoverageAudit.Report report = new CoverageAudit(client, null, 1, 1).run(List.of(
+                new CoverageAudit.Asset("Ore_Copper", "Copper Ore"),
+                new CoverageAudit.Asset("Ore_Iron", "Iron Ore")), progress -> {
+        }).join();
+
+        assertEquals(1, report.count(CoverageAudit.Status.FAILED));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void runsOneAuditAtATime() {
+        server.titles("Iron Ore");
+        server.latency(Duration.ofMillis(200), Duration.ZERO);
+        CoverageAudit audit = new CoverageAudit(client, null, 50, 4);
+        List<CoverageAudit.Asset> assets = List.of(new CoverageAudit.Asset("Ore_Iron", "Iron Ore"));
+
+        CompletableFuture<CoverageAudit.Report> first = audit.run(assets, progress -> {
+        });
+        assertTrue(audit.isRunning());
+        CompletionException e = assertThrows(CompletionException.class, () -> audit.run(assets, progress -> {
+        }).join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+
+        assertEquals(1, first.join().count(CoverageAudit.Status.PRESENT));
+        assertFalse(audit.isRunning());
+    }
+
+    @Test
+    public void writesCsvAndJsonReports() throws IOException {
+        server.titles("Iron Ore");
+        CoverageAudit.Report report = new CoverageAudit(client, null, 50, 4).run(List.of(
+                new CoverageAudit.Asset("Ore_Iron", "Iron Ore"),
+                new CoverageAudit.Asset("Bench_Tier_1", "Workbench, \"Tier 1\"")), progress -> {
+        }).join();
+
+        List<Path> files = report.write(Files.createTempDirectory("audit"));
+        assertEquals(List.of(
+                "id,title,status,target",
+                "Bench_Tier_1,\"Workbench, \"\"Tier 1\"\"\",missing,",
+                "Ore_Iron,Iron Ore,present,"), Files.readAllLines(files.get(0), StandardCharsets.UTF_8));
+
+        String json = Files.readString(files.get(1));
+        assertTrue(json.contains("\"missing\": 1"));
+        assertTrue(json.contains("\"id\": \"Ore_Iron\""));
+    }
+}
@@ -0,0 +1,139 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.FakeWikiServer;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.cache.CacheSettings;
+import org.hytalewiki.net.cache.ResponseStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotbarPrefetcherTests {
+
+    private FakeWikiServer server;
+
+    private WikiClient client;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        this.server = new FakeWikiServer();
+        this.client = new WikiClient(server.getBaseUrl());
+        this.client.enableCache(CacheSettings.create());
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.server.close();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void fetchesEachTitleOnce() throws InterruptedException {
+        server.latency(Duration.ofMillis(100), Duration.ZERO);
+        HotbarPrefetcher prefetcher = new HotbarPrefetcher(client, null, executor, 2, 8,
+                Duration.ofSeconds(5), Duration.ofSeconds(60));
+
+        prefetcher.offer("Iron");
+        prefetcher.offer("Iron");
+        prefetcher.offer("Iron");
+        awaitIdle(prefetcher);
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, prefetcher.getPrefetched());
+        assertTrue(client.isPageCached("Iron"));
+
+        prefetcher.offer("Iron");
+        awaitIdle(prefetcher);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void pausesWhenTheWikiIsSlow() throws InterruptedException {
+        server.latency(Duration.ofMillis(50), Duration.ZERO);
+        HotbarPrefetcher prefetcher = new HotbarPrefetcher(client, null, executor, 2, 8,
+                Duration.ofMillis(1), Duration.ofSeconds(60));
+
+        prefetcher.offer("Iron");
+        awaitIdle(prefetcher);
+        assertEquals(0, prefetcher.getPrefetched());
+
+        prefetcher.offer("Iorn");
+        awaitIdle(prefetcher);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, prefetcher.getShed());
+    }
+
+    @Test
+    public void leavesTheThrottleToCommands() throws InterruptedException {
+        RequestThrottle throttle = new RequestThrottle(0.001, 2, 0, 1, 5);
+        HotbarPrefetcher prefetcher = new HotbarPrefetcher(client, throttle, executor, 2, 8,
+                Duration.ofSeconds(5), Duration.ofSeconds(60));
+
+        prefetcher.offer("Iron");
+        awaitIdle(prefetcher);
+        prefetcher.offer("Iorn");
+        awaitIdle(prefetcher);
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, prefetcher.getShed());
+        assertEquals(RequestThrottle.Outcome.ADMITTED, throttle.acquire(UUID.randomUUID()).getOutcome());
+    }
+
+    @Test
+    public void checksTheCacheOffTheCallingThread() throws InterruptedException {
+        Thread caller = Thread.currentThread();
+        List<Thread> readers = new CopyOnWriteArrayList<>();
+        client.enableCache(CacheSettings.create(), new ResponseStore() {
+            @Override
+            public Stored get(String key) {
+                readers.add(Thread.currentThread());
+                return null;
+            }
+
+            @Override
+            public void put(String key, byte[] value, long expiresAtMillis) {
+            }
+
+            @Override
+            public void invalidate(String key) {
+            }
+
+            @Override
+            public void invalidateAll() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        HotbarPrefetcher prefetcher = new HotbarPrefetcher(client, null, executor, 2, 8,
+                Duration.ofSeconds(5), Duration.ofSeconds(60));
+
+        prefetcher.offer("Iron");
+        awaitIdle(prefetcher);
+
+        assertFalse(readers.isEmpty());
+        assertFalse(readers.contains(caller));
+        assertEquals(1, prefetcher.getPrefetched());
+    }
+
+    private static void awaitIdle(HotbarPrefetcher prefetcher) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (prefetcher.getPending() > 0) {
+            assertTrue(System.nanoTime() < deadline, "prefetches didn't finish");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.FakeWikiServer;
+import org.hytalewiki.net.RequestException;
+import org.hytalewiki.net.WikiClient;
+import org.hytalewiki.net.cache.CacheSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecentChangesSyncTests {
+
+    private FakeWikiServer server;
+
+    private WikiClient client;
+
+    private Path stateFile;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        this.server = new FakeWikiServer();
+        this.client = new WikiClient(server.getBaseUrl());
+        this.client.enableCache(CacheSettings.create());
+        this.stateFile = Files.createTempDirectory("recent-changes").resolve("recentchanges.json");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.server.close();
+    }
+
+    @Test
+    public void invalidatesChangedPages() throws RequestException {
+        RecentChangesSync sync = new RecentChangesSync(client, stateFile, 50);
+        client.page("Iron");
+        client.search("Iron", 10);
+
+        assertEquals(0, sync.poll().join().intValue());
+        assertTrue(client.isPageCached("Iron"));
+
+        server.edit("Copper Ore");
+        assertEquals(1, sync.poll().join().intValue());
+        assertTrue(client.isPageCached("Iron"));
+        assertTrue(client.isSearchCached("Iron", 10));
+
+        server.edit("Iron");
+        assertEquals(1, sync.poll().join().intValue());
+        assertFalse(client.isPageCached("Iron"));
+        assertFalse(client.isSearchCached("Iron", 10));
+    }
+
+    @Test
+    public void resumesFromTheStoredToken() throws IOException, RequestException {
+        RecentChangesSync first = new RecentChangesSync(client, stateFile, 50);
+        first.poll().join();
+        server.edit("Iron");
+        first.poll().join();
+        assertNotNull(first.getToken());
+
+        RecentChangesSync second = new RecentChangesSync(client, stateFile, 50);
+        second.load();
+        assertEquals(first.getToken(), second.getToken());
+
+        client.page("Iron");
+        assertEquals(0, second.poll().join().intValue());
+        assertTrue(client.isPageCached("Iron"));
+
+        server.move("Iron", "Iron Bar");
+        assertEquals(1, second.poll().join().intValue());
+        assertFalse(client.isPageCached("Iron"));
+    }
+
+    @Test
+    public void dropsEverythingOnceWhenBehind() throws RequestException {
+        RecentChangesSync sync = new RecentChangesSync(client, stateFile, 2);
+        sync.poll().join();
+        client.page("Iron");
+
+        server.edit("A").edit("B").edit("C");
+        assertEquals(2, sync.poll().join().intValue());
+        assertFalse(client.isPageCached("Iron"));
+
+        client.page("Iron");
+        assertEquals(1, sync.poll().join().intValue());
+        assertTrue(client.isPageCached("Iron"));
+        assertEquals(0, sync.poll().join().intValue());
+    }
+}
@@ -0,0 +1,35 @@
+package org.hytalewiki;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestThrottleTests {
+
+    @Test
+    public void limitsSendersAndTheServer() {
+        RequestThrottle throttle = new RequestThrottle(0.001, 3, 0, 0.001, 2);
+        UUID first = UUID.randomUUID();
+
+        assertEquals(RequestThrottle.Outcome.ADMITTED, throttle.acquire(first).getOutcome());
+        assertEquals(RequestThrottle.Outcome.ADMITTED, throttle.acquire(first).getOutcome());
+        assertEquals(RequestThrottle.Outcome.SENDER_LIMITED, throttle.acquire(first).getOutcome());
+
+        UUID second = UUID.randomUUID();
+        assertEquals(RequestThrottle.Outcome.ADMITTED, throttle.acquire(second).getOutcome());
+        assertEquals(RequestThrottle.Outcome.GLOBAL_LIMITED, throttle.acquire(second).getOutcome());
+    }
+
+    @Test
+    public void keepsTheSendersTokenWhenTheServerIsLimited() {
+        RequestThrottle throttle = new RequestThrottle(0.001, 1, 0, 0.001, 2);
+        UUID sender = UUID.randomUUID();
+
+        assertEquals(RequestThrottle.Outcome.ADMITTED, throttle.acquire(sender).getOutcome());
+        // Nothing sent for these, so the sender still has a token for when the server has one.
+        assertEquals(RequestThrottle.Outcome.GLOBAL_LIMITED, throttle.acquire(sender).getOutcome());
+        assertEquals(RequestThrottle.Outcome.GLOBAL_LIMITED, throttle.acquire(sender).getOutcome());
+    }
+}
@@ -0,0 +1,123 @@
+package org.hytalewiki;
+
+import org.hytalewiki.net.FakeWikiServer;
+import org.hytalewiki.net.WikiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TitleCompleterTests {
+
+    private FakeWikiServer server;
+
+    private WikiClient client;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        this.server = new FakeWikiServer();
+        this.client = new WikiClient(server.getBaseUrl());
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.server.close();
+    }
+
+    @Test
+    public void completesWikiAndItemTitles() {
+        server.titles("Iron", "Iron Ore", "Copper Ore", "Crafting");
+        TitleCompleter completer = new TitleCompleter(client, null, () -> List.of("Iron Sword", "iron ore"), 100, 10, 2);
+
+        completer.rebuild();
+        assertEquals(List.of("iron ore", "Iron Sword"), completer.complete("iron"));
+
+        assertEquals(5, completer.refresh().join().intValue());
+        assertEquals(List.of("Iron", "Iron Ore", "Iron Sword"), completer.complete("iron"));
+        assertEquals(List.of("Copper Ore", "Iron Ore"), completer.complete("ore"));
+    }
+
+    @Test
+    public void followsContinuationsUpToMaxTitles() {
+        String[] titles = new String[1200];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = "Page " + i;
+        }
+        server.titles(titles);
+
+        assertEquals(1200, new TitleCompleter(client, null, List::of, 5000, 10, 2).refresh().join().intValue());
+        assertEquals(3, server.getRequestCount());
+
+        assertEquals(700, new TitleCompleter(client, null, List::of, 700, 10, 2).refresh().join().intValue());
+    }
+
+    @Test
+    public void resolvesNearMissesOfWikiAndItemTitles() {
+        server.titles("Iron Shovel", "Copper Ore");
+        TitleCompleter completer = new TitleCompleter(client, null, () -> List.of("Crude Sword"), 100, 10, 2);
+        completer.refresh().join();
+
+        assertEquals("Iron Shovel", completer.resolve("Iorn_Shovel"));
+        assertEquals("Crude Sword", completer.resolve("crude swrod"));
+        assertNull(completer.resolve("Steel Pickaxe"));
+
+        TitleCompleter exact = new TitleCompleter(client, null, List::of, 100, 10, 0);
+        exact.refresh().join();
+        assertEquals("Iron Shovel", exact.resolve("iron shovel"));
+        assertNull(exact.resolve("Iorn Shovel"));
+    }
+
+    @Test
+    public void keepsTheLastTitlesOnFailure() {
+        server.titles("Iron");
+        TitleCompleter completer = new TitleCompleter(client, null, List::of, 100, 10, 2);
+        completer.refresh().join();
+
+        server.failNext(10, 500);
+        assertThrows(CompletionException.class, () -> completer.refresh().join());
+        assertEquals(List.of("Iron"), completer.complete("ir"));
+    }
+
+    @Test
+    public void fetchesTitlesOnlyWithSpareTokens() throws InterruptedException {
+        String[] titles = new String[1200];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = "Page " + i;
+        }
+        server.titles(titles);
+
+        // One token to spare, and no more for a long while.
+        RequestThrottle throttle = new RequestThrottle(0.001, 2, 0, 1, 1);
+        CompletableFuture<Integer> refresh = new TitleCompleter(client, throttle, List::of, 5000, 10, 2).refresh();
+
+        Thread.sleep(600);
+        assertFalse(refresh.isDone());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void rebuildsOnceForRequestsUntilItRuns() {
+        List<String> local = new ArrayList<>(List.of("Iron Sword"));
+        TitleCompleter completer = new TitleCompleter(client, null, () -> List.copyOf(local), 100, 10, 2);
+        List<Runnable> tasks = new ArrayList<>();
+
+        completer.requestRebuild(tasks::add);
+        local.add("Iron Ore");
+        completer.requestRebuild(tasks::add);
+        assertEquals(1, tasks.size());
+        assertTrue(completer.complete("iron").isEmpty());
+
+        tasks.removeFirst().run();
+        assertEquals(List.of("Iron Ore", "Iron Sword"), completer.complete("iron"));
+
+        completer.requestRebuild(tasks::add);
+        assertEquals(1, tasks.size());
+    }
+}
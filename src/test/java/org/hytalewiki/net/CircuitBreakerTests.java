@@ -0,0 +1,92 @@
+package org.hytalewiki.net;
+
+import com.google.gson.stream.MalformedJsonException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofSeconds(10), clock::get);
+
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void probesOnceAfterOpenDuration() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(10), clock::get);
+        breaker.onFailure();
+
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void ignoresFailuresWhileOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(10), clock::get);
+        breaker.onFailure();
+
+        // Requests still in flight when it opened.
+        clock.addAndGet(Duration.ofSeconds(9).toNanos());
+        breaker.onFailure();
+        breaker.onFailure();
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void reopensWhenProbeFails() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(10), clock::get);
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void classifiesFailures() {
+        assertEquals(FailureKind.TIMEOUT, FailureKind.classify(new RequestException(new HttpTimeoutException("timed out"))));
+        assertEquals(FailureKind.THROTTLED, FailureKind.classify(new ResponseException(429, Duration.ofSeconds(1), "")));
+        assertEquals(FailureKind.SERVER, FailureKind.classify(new ResponseException(503, null, "")));
+        assertEquals(FailureKind.CLIENT, FailureKind.classify(new ResponseException(400, null, "")));
+        assertEquals(FailureKind.IO, FailureKind.classify(new RequestException(new IOException("Connection reset"))));
+        assertTrue(FailureKind.IO.isRetryable());
+        assertEquals(FailureKind.PARSE, FailureKind.classify(new RequestException(new MalformedJsonException("Unterminated object"))));
+        assertEquals(FailureKind.OTHER, FailureKind.classify(new RequestException(new IllegalStateException())));
+    }
+
+    @Test
+    public void honorsRetryAfter() {
+        RetryPolicy policy = RetryPolicy.create().maxAttempts(3).maxDelay(Duration.ofSeconds(5));
+
+        assertEquals(Duration.ofSeconds(2), policy.delayFor(1, Duration.ofSeconds(2)));
+        assertNull(policy.delayFor(1, Duration.ofSeconds(30)));
+        assertNull(policy.delayFor(3, null));
+        assertTrue(policy.delayFor(2, null).compareTo(Duration.ofMillis(500)) <= 0);
+    }
+}
@@ -0,0 +1,63 @@
+package org.hytalewiki.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentEncodingTests {
+
+    private static final byte[] BODY = "<p>Iron Ore is found in caves.</p>".getBytes(StandardCharsets.UTF_8);
+
+    private static HttpHeaders encoded(String encoding) {
+        return HttpHeaders.of(Map.of("Content-Encoding", List.of(encoding)), (name, value) -> true);
+    }
+
+    @Test
+    public void decodesGzipAndDeflate() throws IOException {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(BODY);
+        }
+        ByteArrayOutputStream deflate = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(deflate)) {
+            out.write(BODY);
+        }
+
+        assertArrayEquals(BODY, ContentEncoding.decode(encoded("gzip"), gzip.toByteArray()).readAllBytes());
+        assertArrayEquals(BODY, ContentEncoding.decode(encoded("x-gzip"), gzip.toByteArray()).readAllBytes());
+        assertArrayEquals(BODY, ContentEncoding.decode(encoded("Deflate"), deflate.toByteArray()).readAllBytes());
+        assertArrayEquals(BODY, ContentEncoding.decode(encoded("identity"), BODY).readAllBytes());
+        assertEquals(0, ContentEncoding.decode(encoded("gzip"), new byte[0]).readAllBytes().length);
+    }
+
+    @Test
+    public void opensGzipOnTheFirstRead() {
+        // Would fail right away if the header was read here.
+        InputStream stream = ContentEncoding.decode(encoded("gzip"), new ByteArrayInputStream(BODY));
+
+        assertThrows(IOException.class, stream::read);
+    }
+
+    @Test
+    public void boundsReadsToMaxBytes() throws IOException {
+        ContentEncoding.BoundedInputStream cut = new ContentEncoding.BoundedInputStream(new ByteArrayInputStream(BODY), 10);
+        assertEquals(10, cut.readAllBytes().length);
+        assertTrue(cut.isTruncated());
+
+        ContentEncoding.BoundedInputStream whole = new ContentEncoding.BoundedInputStream(new ByteArrayInputStream(BODY), BODY.length);
+        assertArrayEquals(BODY, whole.readAllBytes());
+        assertFalse(whole.isTruncated());
+    }
+}
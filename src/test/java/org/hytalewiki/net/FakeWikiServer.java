@@ -0,0 +1,457 @@
+package org.hytalewiki.net;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.hytalewiki.net.json.ResponseCodec;
+import org.hytalewiki.net.response.AllPages;
+import org.hytalewiki.net.response.RecentChanges;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Stands in for hytalewiki.org's REST API, serving the recorded responses in /fixtures.
+// Pages are looked up as page_<key>.json and page_<key>.html, searches as search_<term>.json and
+// search_title_<term>.json, lowercase with spaces as underscores. Anything else is a missing page or
+// an empty search, like on the real wiki. Latency, errors and throttling can be changed while running.
+// The action API only answers recent changes, which tests record with edit() and move(), and the list of
+// all pages and queries for titles, which tests set with titles() and redirect().
+public class FakeWikiServer implements AutoCloseable {
+
+    private static final Pattern LATEST_REVISION = Pattern.compile("\"latest\"\\s*:\\s*\\{\\s*\"id\"\\s*:\\s*(\\d+)");
+
+    private static final byte[] EMPTY_SEARCH = "{\"pages\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, byte[]> fixtures = new ConcurrentHashMap<>();
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration jitter = Duration.ZERO;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private final AtomicInteger failNext = new AtomicInteger();
+
+    // Null while not throttling.
+    private volatile TokenBucket throttle;
+
+    private final List<RecentChanges.Change> changes = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextChangeId = new AtomicLong(100);
+
+    private volatile List<String> titles = List.of();
+
+    // Of responses to clients that accept it, null to send them as is.
+    private volatile String encoding = "gzip";
+
+    private final Map<String, String> redirects = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public FakeWikiServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    // Delay every response by latency plus up to jitter.
+    public FakeWikiServer latency(Duration latency, Duration jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+        return this;
+    }
+
+    // Answer this fraction of requests with status instead of the fixture.
+    public FakeWikiServer errorRate(double errorRate, int status) {
+        this.errorRate = errorRate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    // Answer the next count requests with status.
+    public FakeWikiServer failNext(int count, int status) {
+        this.errorStatus = status;
+        this.failNext.set(count);
+        return this;
+    }
+
+    // Answer 429 with Retry-After once requests come in faster than this, zero turns throttling off.
+    public FakeWikiServer throttle(double requestsPerSecond, int burst) {
+        this.throttle = requestsPerSecond > 0 ? new TokenBucket(requestsPerSecond, burst) : null;
+        return this;
+    }
+
+    // Record a change for the recent changes feed, timestamped now.
+    public FakeWikiServer change(String type, String logType, String title, String target) {
+        String timestamp = DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        changes.add(new RecentChanges.Change(nextChangeId.getAndIncrement(), type, logType, title, timestamp, target));
+        return this;
+    }
+
+    public FakeWikiServer edit(String title) {
+        return change("edit", null, title, null);
+    }
+
+    public FakeWikiServer move(String from, String to) {
+        return change("log", "move", from, to);
+    }
+
+    // Titles for the list of all pages.
+    public FakeWikiServer titles(String... titles) {
+        this.titles = Arrays.stream(titles).sorted(Comparator.comparing(title -> title.replace(' ', '_'))).toList();
+        return this;
+    }
+
+    // Queries for the title end up at the target, which should be one of titles().
+    // Compress responses with gzip or deflate, or not at all with null.
+    public FakeWikiServer encoding(String encoding) {
+        this.encoding = encoding;
+        return this;
+    }
+
+    // Serve html for the page, instead of a fixture.
+    public FakeWikiServer html(String key, String html) {
+        fixtures.put("page_" + name(key) + ".html", html.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    public FakeWikiServer redirect(String from, String to) {
+        redirects.put(from, to);
+        return this;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getNotModifiedCount() {
+        return notModified.sum();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            delay();
+
+            TokenBucket bucket = this.throttle;
+            if (bucket != null && !bucket.tryAcquire()) {
+                throttled.increment();
+                long seconds = Math.max(1, Duration.ofNanos(bucket.timeUntilAvailable()).toSeconds());
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+                respond(exchange, 429, "text/plain", "Too Many Requests".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            if (failNext.getAndUpdate(count -> Math.max(0, count - 1)) > 0
+                    || (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)) {
+                injectedErrors.increment();
+                respond(exchange, errorStatus, "text/plain", "Injected error".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            route(exchange);
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (path.equals("/api.php") && "recentchanges".equals(query.get("list"))) {
+            respond(exchange, 200, "application/json", recentChanges(query));
+            return;
+        }
+        if (path.equals("/api.php") && "allpages".equals(query.get("list"))) {
+            respond(exchange, 200, "application/json", allPages(query));
+            return;
+        }
+        if (path.equals("/api.php") && query.containsKey("titles")) {
+            respond(exchange, 200, "application/json", queryTitles(query.get("titles")));
+            return;
+        }
+
+        if (!path.startsWith("/rest.php/v1/")) {
+            // Warm-up and keep-alive requests.
+            respond(exchange, 200, "text/html", new byte[0]);
+            return;
+        }
+        path = path.substring("/rest.php/v1".length());
+
+        if (path.equals("/search/page") || path.equals("/search/title")) {
+            String prefix = path.equals("/search/page") ? "search_" : "search_title_";
+            byte[] body = fixture(prefix + name(query.getOrDefault("q", "")) + ".json");
+            respond(exchange, 200, "application/json", body != null ? body : EMPTY_SEARCH);
+            return;
+        }
+
+        if (path.startsWith("/page/")) {
+            String key = decode(path.substring("/page/".length()));
+            boolean html = key.endsWith("/html");
+            if (html) {
+                key = key.substring(0, key.length() - "/html".length());
+            }
+
+            byte[] body = fixture("page_" + name(key) + (html ? ".html" : ".json"));
+            if (body == null) {
+                respond(exchange, 404, "application/json", fixture("page_missing.json"));
+                return;
+            }
+
+            // Revision IDs lead MediaWiki's ETags, which the client's cache picks up.
+            String etag = "W/\"" + revision(key) + (html ? "/html" : "/json") + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.increment();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            respond(exchange, 200, html ? "text/html; charset=utf-8" : "application/json", body);
+            return;
+        }
+
+        respond(exchange, 404, "application/json", "{\"httpCode\":404}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Changes at or after rccontinue (timestamp|id) or rcstart, oldest first, with a continuation past rclimit.
+    private byte[] recentChanges(Map<String, String> query) {
+        int limit = Integer.parseInt(query.getOrDefault("rclimit", "10"));
+        String token = query.get("rccontinue");
+        Instant start = query.containsKey("rcstart") ? Instant.parse(query.get("rcstart")) : Instant.EPOCH;
+
+        RecentChanges result = new RecentChanges();
+        for (RecentChanges.Change change : changes) {
+            String position = change.timestamp().replaceAll("[^0-9]", "");
+            boolean after = token != null
+                    ? compare(position, change.id(), token) >= 0
+                    : !Instant.parse(change.timestamp()).isBefore(start);
+            if (!after) {
+                continue;
+            }
+            if (result.getChanges().size() == limit) {
+                result.setContinueToken(position + "|" + change.id());
+                break;
+            }
+            result.addChange(change);
+        }
+        return ResponseCodec.FULL.encode(result, RecentChanges.class).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Titles from apcontinue on, in pages of aplimit, continuing with the first title left out.
+    private byte[] allPages(Map<String, String> query) {
+        int limit = Integer.parseInt(query.getOrDefault("aplimit", "10"));
+        String from = query.getOrDefault("apcontinue", "");
+
+        AllPages result = new AllPages();
+        for (String title : titles) {
+            if (title.replace(' ', '_').compareTo(from) < 0) {
+                continue;
+            }
+            if (result.getTitles().size() == limit) {
+                result.setContinueToken(title.replace(' ', '_'));
+                break;
+            }
+            result.addTitle(title);
+        }
+        return ResponseCodec.FULL.encode(result, AllPages.class).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Titles normalized the way MediaWiki does, redirects followed and pages looked up in titles().
+    private byte[] queryTitles(String requested) {
+        JsonArray normalized = new JsonArray();
+        JsonArray followed = new JsonArray();
+        JsonArray pages = new JsonArray();
+        for (String title : requested.split("\\|")) {
+            String canonical = title.replace('_', ' ');
+            canonical = canonical.isEmpty() ? canonical : Character.toUpperCase(canonical.charAt(0)) + canonical.substring(1);
+            if (!canonical.equals(title)) {
+                normalized.add(mapping(title, canonical));
+            }
+            String target = redirects.getOrDefault(canonical, canonical);
+            if (!target.equals(canonical)) {
+                followed.add(mapping(canonical, target));
+            }
+
+            JsonObject page = new JsonObject();
+            page.addProperty("title", target);
+            int index = titles.indexOf(target);
+            if (index >= 0) {
+                page.addProperty("pageid", index + 1);
+                page.addProperty("lastrevid", 1000 + index);
+                JsonObject revision = new JsonObject();
+                revision.addProperty("revid", 1000 + index);
+                revision.addProperty("timestamp", "2026-01-01T00:00:00Z");
+                JsonArray revisions = new JsonArray();
+                revisions.add(revision);
+                page.add("revisions", revisions);
+            } else {
+                page.addProperty("missing", true);
+            }
+            pages.add(page);
+        }
+
+        JsonObject result = new JsonObject();
+        result.add("normalized", normalized);
+        result.add("redirects", followed);
+        result.add("pages", pages);
+        JsonObject body = new JsonObject();
+        body.add("query", result);
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JsonObject mapping(String from, String to) {
+        JsonObject mapping = new JsonObject();
+        mapping.addProperty("from", from);
+        mapping.addProperty("to", to);
+        return mapping;
+    }
+
+    private static int compare(String timestamp, long id, String token) {
+        String[] parts = token.split("\\|");
+        int order = timestamp.compareTo(parts[0]);
+        return order != 0 ? order : Long.compare(id, Long.parseLong(parts[1]));
+    }
+
+    private void delay() {
+        long nanos = latency.toNanos();
+        long jitterNanos = jitter.toNanos();
+        if (jitterNanos > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(jitterNanos);
+        }
+        if (nanos <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        String encoding = this.encoding;
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (encoding != null && acceptEncoding != null && acceptEncoding.contains(encoding) && body.length > 0) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = encoding.equals("gzip") ? new GZIPOutputStream(compressed) : new DeflaterOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private byte[] fixture(String name) throws IOException {
+        byte[] cached = fixtures.get(name);
+        if (cached != null) {
+            return cached.length == 0 ? null : cached;
+        }
+
+        byte[] body;
+        try (InputStream stream = FakeWikiServer.class.getResourceAsStream("/fixtures/" + name)) {
+            body = stream != null ? stream.readAllBytes() : new byte[0];
+        }
+        fixtures.put(name, body);
+        return body.length == 0 ? null : body;
+    }
+
+    // The latest revision recorded in the page fixture.
+    private long revision(String key) throws IOException {
+        byte[] page = fixture("page_" + name(key) + ".json");
+        if (page == null) {
+            return 0;
+        }
+
+        Matcher matcher = LATEST_REVISION.matcher(new String(page, StandardCharsets.UTF_8));
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    private static String name(String key) {
+        return key.toLowerCase(Locale.ROOT).replace(' ', '_');
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(decode(pair.substring(0, separator)), decode(pair.substring(separator + 1)));
+            }
+        }
+        return params;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,34 @@
+package org.hytalewiki.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTests {
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long micros = 0; micros < 100_000; micros++) {
+            int bucket = LatencyHistogram.bucketFor(micros);
+            assertTrue(micros <= LatencyHistogram.upperBound(bucket), "Above bucket: " + micros);
+            assertTrue(bucket == 0 || micros > LatencyHistogram.upperBound(bucket - 1), "Below bucket: " + micros);
+        }
+    }
+
+    @Test
+    public void estimatesPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(Duration.ofMillis(millis).toNanos());
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100, snapshot.count());
+        assertEquals(Duration.ofMillis(100), snapshot.max());
+        assertEquals(50, snapshot.p50().toMillis(), 50 * 0.125);
+        assertEquals(99, snapshot.p99().toMillis(), 99 * 0.125);
+    }
+}
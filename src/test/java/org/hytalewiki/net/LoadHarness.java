@@ -0,0 +1,186 @@
+package org.hytalewiki.net;
+
+import org.hytalewiki.net.cache.CacheSettings;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Simulates players running /wiki commands against FakeWikiServer and reports throughput and latency.
+// Each player looks things up one after another, like someone typing commands, with a mix of pages,
+// searches and misses. Run with ./gradlew loadTest -Pload.args="--players=64 --latency=50".
+//
+// Options, all --name=value:
+//   players   concurrent players (32)
+//   requests  lookups per player (100)
+//   think     pause between a player's lookups in ms (0)
+//   latency   server latency in ms (20)
+//   jitter    extra random server latency in ms (10)
+//   errors    fraction of requests the server fails with 503 (0)
+//   throttle  requests per second the server allows before answering 429, 0 for no limit (0)
+//   cache     whether the client caches responses (true)
+//   threads   platform, virtual or both (platform). Platform runs each player on a pooled thread and
+//             the client on HttpClient's default executor, virtual runs both on virtual threads.
+//             Both runs the same load in each mode, one after the other, with a fresh client each.
+public class LoadHarness {
+
+    private static final String[] TERMS = {
+            "Iron", "Iron Sword", "Iron Ingot", "Iorn", "Copper", "Copper Ore", "Thorium", "Wood", "Stone", "Crude Sword"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int players = Integer.parseInt(options.getOrDefault("players", "32"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "100"));
+        long think = Long.parseLong(options.getOrDefault("think", "0"));
+
+        try (FakeWikiServer server = new FakeWikiServer()) {
+            server.latency(Duration.ofMillis(Long.parseLong(options.getOrDefault("latency", "20"))),
+                            Duration.ofMillis(Long.parseLong(options.getOrDefault("jitter", "10"))))
+                    .errorRate(Double.parseDouble(options.getOrDefault("errors", "0")), 503)
+                    .throttle(Double.parseDouble(options.getOrDefault("throttle", "0")), 20);
+
+            String threads = options.getOrDefault("threads", "platform");
+            List<Boolean> modes = switch (threads) {
+                case "platform" -> List.of(false);
+                case "virtual" -> List.of(true);
+                case "both" -> List.of(false, true);
+                default -> throw new IllegalArgumentException("Unknown threads " + threads);
+            };
+
+            for (boolean virtual : modes) {
+                WikiClient client = new WikiClient(server.getBaseUrl());
+                if (Boolean.parseBoolean(options.getOrDefault("cache", "true"))) {
+                    client.enableCache(CacheSettings.create());
+                }
+
+                try (ExecutorService executor = virtual
+                        ? Executors.newVirtualThreadPerTaskExecutor()
+                        : Executors.newFixedThreadPool(players)) {
+                    if (virtual) {
+                        client.setExecutor(executor);
+                    }
+
+                    long before = server.getRequestCount();
+                    Result result = run(client, executor, players, requests, think);
+                    System.out.println(virtual ? "== virtual threads" : "== platform threads");
+                    report(result, client, server, server.getRequestCount() - before, players);
+                }
+            }
+        }
+    }
+
+    record Result(LatencyHistogram.Snapshot latency, long failures, Duration elapsed, int peakThreads) {
+    }
+
+    static Result run(WikiClient client, ExecutorService executor, int players, int requests, long thinkMillis) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder failures = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(players);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        for (int player = 0; player < players; player++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < requests; i++) {
+                        long begin = System.nanoTime();
+                        try {
+                            lookup(client);
+                        } catch (RequestException e) {
+                            failures.increment();
+                        }
+                        latency.record(System.nanoTime() - begin);
+
+                        if (thinkMillis > 0) {
+                            Thread.sleep(thinkMillis);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - begin);
+
+        return new Result(latency.snapshot(), failures.sum(), elapsed, threads.getPeakThreadCount());
+    }
+
+    // Roughly what players do: mostly pages and searches, now and then a title search or the html.
+    private static void lookup(WikiClient client) throws RequestException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String term = TERMS[random.nextInt(TERMS.length)];
+        int kind = random.nextInt(100);
+
+        if (kind < 50) {
+            client.page(term);
+        } else if (kind < 85) {
+            client.search(term, 10);
+        } else if (kind < 95) {
+            client.searchTitle(term, 10);
+        } else {
+            try {
+                client.html(term);
+            } catch (ResponseException e) {
+                // Missing pages have no html, that's not what we're measuring.
+                if (e.getStatusCode() != 404) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void report(Result result, WikiClient client, FakeWikiServer server, long serverRequests, int players) {
+        LatencyHistogram.Snapshot latency = result.latency();
+        double seconds = result.elapsed().toNanos() / 1e9;
+
+        System.out.printf(Locale.ROOT, "%d players, %d lookups in %.2fs: %.0f lookups/s, %d failed%n",
+                players, latency.count(), seconds, latency.count() / seconds, result.failures());
+        System.out.printf(Locale.ROOT, "latency p50 %s, p90 %s, p99 %s, max %s%n",
+                millis(latency.p50()), millis(latency.p90()), millis(latency.p99()), millis(latency.max()));
+        System.out.printf(Locale.ROOT, "peak %d platform threads in the JVM%n", result.peakThreads());
+        System.out.printf(Locale.ROOT, "server saw %d requests, %d injected errors, %d throttled, %d not modified in total%n",
+                serverRequests, server.getInjectedErrorCount(), server.getThrottledCount(), server.getNotModifiedCount());
+
+        List<String> endpoints = new ArrayList<>();
+        for (EndpointStats.Snapshot stats : client.snapshotEndpointStats()) {
+            endpoints.add(String.format(Locale.ROOT, "%s %d req p99 %s cache %.0f%%", stats.endpoint().getName(),
+                    stats.requests(), millis(stats.latency().p99()), stats.cacheHitRatio() * 100));
+        }
+        System.out.println(String.join(", ", endpoints));
+    }
+
+    private static String millis(Duration duration) {
+        return String.format(Locale.ROOT, "%.1fms", duration.toNanos() / 1e6);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,51 @@
+package org.hytalewiki.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MicroBatcherTests {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private CompletableFuture<Map<String, Integer>> load(List<String> keys) {
+        batches.add(keys);
+        return CompletableFuture.completedFuture(keys.stream()
+                .filter(key -> !key.equals("missing"))
+                .collect(Collectors.toMap(key -> key, String::length)));
+    }
+
+    @Test
+    public void batchesLookupsWithinWindow() throws Exception {
+        MicroBatcher<String, Integer> batcher = new MicroBatcher<>(this::load, Duration.ofMillis(50), 10);
+
+        CompletableFuture<Integer> iron = batcher.submit("Iron");
+        CompletableFuture<Integer> again = batcher.submit("Iron");
+        CompletableFuture<Integer> missing = batcher.submit("missing");
+
+        assertEquals(4, (int) iron.get(5, TimeUnit.SECONDS));
+        assertEquals(4, (int) again.get(5, TimeUnit.SECONDS));
+        assertNull(missing.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of("Iron", "missing")), batches);
+    }
+
+    @Test
+    public void flushesFullBatchesImmediately() throws Exception {
+        MicroBatcher<String, Integer> batcher = new MicroBatcher<>(this::load, Duration.ofHours(1), 2);
+
+        CompletableFuture<Integer> first = batcher.submit("Iron");
+        CompletableFuture<Integer> second = batcher.submit("Copper");
+
+        assertEquals(4, (int) first.get(5, TimeUnit.SECONDS));
+        assertEquals(6, (int) second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, batcher.getPendingCount());
+    }
+}
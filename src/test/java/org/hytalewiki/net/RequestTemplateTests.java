@@ -0,0 +1,67 @@
+package org.hytalewiki.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestTemplateTests {
+
+    private static final String REST_PATH = "https://hytalewiki.org/rest.php/v1";
+
+    private static final String[] TERMS = {
+            "Iron", "Iron Shovel", "Iron_Shovel", "Épée en fer", "Kürbis & Möhre", "a+b=c?d/e#f", "100% *wood*",
+            "~tilde~", "🗡 Sword", "broken \uD800 surrogate", ""
+    };
+
+    @Test
+    public void matchesPathBuilder() {
+        RequestTemplate page = RequestTemplate.ofPath(REST_PATH + "/page/", "");
+        RequestTemplate search = RequestTemplate.ofQuery(REST_PATH + "/search/page", new String[]{"q", "limit"});
+
+        for (String term : TERMS) {
+            if (!term.contains("#") && !term.contains("%") && !term.contains("?") && !term.contains("\uD800")) {
+                WikiClient.PathBuilder pagePath = WikiClient.PathBuilder.create(REST_PATH).appendPath("/page/" + term);
+                assertEquals(pagePath.toURI(), page.expand(term).uri());
+                assertEquals(pagePath.toKey(), page.expand(term).key());
+            }
+
+            WikiClient.PathBuilder searchPath = WikiClient.PathBuilder.create(REST_PATH).appendPath("/search/page")
+                    .param("q", term)
+                    .param("limit", "10");
+            assertEquals(searchPath.toString(), search.expand(term, "10").uri().toString());
+            assertEquals(searchPath.toKey(), search.expand(term, "10").key());
+        }
+    }
+
+    @Test
+    public void encodesLikeUrlEncoder() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 10_000; i++) {
+            char[] chars = new char[random.nextInt(8)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10000));
+            }
+            String value = new String(chars);
+
+            builder.setLength(0);
+            RequestTemplate.appendEncoded(builder, value);
+            assertEquals(URLEncoder.encode(value, StandardCharsets.UTF_8), builder.toString(), value);
+        }
+    }
+
+    @Test
+    public void reusesRecentExpansions() {
+        RequestTemplate search = RequestTemplate.ofQuery(REST_PATH + "/search/page", new String[]{"q", "limit"});
+
+        RequestTemplate.Target first = search.expand("Iron", "10");
+        assertSame(first, search.expand("Iron", "10"));
+        assertNotSame(first, search.expand("Iron", "5"));
+        assertEquals(1, search.size());
+    }
+}
@@ -0,0 +1,80 @@
+package org.hytalewiki.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenBucketTests {
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+
+    @Test
+    public void allowsBurstThenRate() {
+        TokenBucket bucket = new TokenBucket(1, 3, clock::get);
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void leavesSpareTokens() {
+        TokenBucket bucket = new TokenBucket(1, 4, clock::get);
+
+        assertTrue(bucket.tryAcquireLeaving(2));
+        assertTrue(bucket.tryAcquireLeaving(2));
+        assertFalse(bucket.tryAcquireLeaving(2));
+
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void queuesUpToMaximumWait() {
+        TokenBucket bucket = new TokenBucket(10, 1, clock::get);
+        long interval = Duration.ofMillis(100).toNanos();
+
+        assertEquals(0, bucket.reserve(2 * interval));
+        assertEquals(interval, bucket.reserve(2 * interval));
+        assertEquals(2 * interval, bucket.reserve(2 * interval));
+        assertEquals(-1, bucket.reserve(2 * interval));
+    }
+
+    @Test
+    public void refillsCompletely() {
+        TokenBucket bucket = new TokenBucket(1, 2, clock::get);
+        bucket.tryAcquire();
+        assertFalse(bucket.isFull());
+
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertTrue(bucket.isFull());
+    }
+
+    @Test
+    public void refundsTakenTokens() {
+        TokenBucket bucket = new TokenBucket(1, 2, clock::get);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+
+        bucket.refund();
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        // Never beyond full.
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        bucket.refund();
+        assertTrue(bucket.isFull());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+}
@@ -0,0 +1,185 @@
+package org.hytalewiki.net;
+
+import org.hytalewiki.net.cache.CacheSettings;
+import org.hytalewiki.net.cache.MappedResponseStore;
+import org.hytalewiki.net.cache.SnapshotResponseStore;
+import org.hytalewiki.net.response.PageObject;
+import org.hytalewiki.net.response.SearchResult;
+import org.hytalewiki.net.search.SearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The live tests in WikiClientTests, plus failure handling, against FakeWikiServer.
+public class WikiClientOfflineTests {
+
+    private FakeWikiServer server;
+
+    private WikiClient client;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        this.server = new FakeWikiServer();
+        this.client = new WikiClient(server.getBaseUrl());
+        this.client.setRetryPolicy(RetryPolicy.create()
+                .baseDelay(Duration.ofMillis(1))
+                .maxDelay(Duration.ofSeconds(2)));
+    }
+
+    @AfterEach
+    public void afterEach() {
+        this.server.close();
+    }
+
+    @Test
+    public void getsPagesAndSearches() throws RequestException {
+        assertEquals("Iron", client.page("Iron").getKey());
+        assertNull(client.page("Iorn").getKey());
+
+        SearchResult result = client.searchTitle("Iron", 10);
+        assertFalse(result.getPages().isEmpty());
+        assertTrue(client.search("Iorn", 10).getPages().isEmpty());
+
+        assertTrue(client.html("Iron").contains("Iron Ore"));
+    }
+
+    @Test
+    public void retriesInjectedErrors() throws RequestException {
+        server.failNext(2, 503);
+
+        assertEquals("Iron", client.page("Iron").getKey());
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void waitsOutThrottling() throws RequestException {
+        server.throttle(2, 1);
+
+        assertEquals("Iron", client.page("Iron").getKey());
+        assertEquals("Iron", client.search("Iron", 10).getPages().getFirst().getKey());
+        assertEquals(1, server.getThrottledCount());
+    }
+
+    @Test
+    public void revalidatesExpiredPages() throws Exception {
+        client.enableCache(CacheSettings.create().positiveTtl(Duration.ofMillis(1)));
+
+        PageObject first = client.page("Iron");
+        Thread.sleep(5);
+        PageObject second = client.page("Iron");
+
+        assertSame(first, second);
+        assertEquals(1, server.getNotModifiedCount());
+    }
+
+    @Test
+    public void searchesLocallyFirst() throws RequestException {
+        client.setSearchIndex(new SearchIndex.Builder()
+                .add(1, "Iron_Ore", "Iron Ore", "Found in caves.")
+                .build());
+
+        assertEquals("Iron_Ore", client.search("caves", 10).getPages().getFirst().getKey());
+        assertTrue(client.isSearchCached("caves", 10));
+        assertEquals(0, server.getRequestCount());
+
+        // Nothing local, so the wiki is asked.
+        assertTrue(client.search("Iorn", 10).getPages().isEmpty());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void leavesOtherServersSharedEntriesOnInvalidateAll() throws IOException, RequestException {
+        Path file = Files.createTempDirectory("shared-cache").resolve("cache.bin");
+        try (MappedResponseStore shared = MappedResponseStore.open(file, 1 << 20, 1024)) {
+            client.enableCache(CacheSettings.create(), shared);
+            client.page("Iron");
+            shared.put("page/elsewhere", "cached by another server".getBytes(StandardCharsets.UTF_8), System.currentTimeMillis() + 60_000);
+
+            client.invalidateAll();
+            assertFalse(client.isPageCached("Iron"));
+            assertNotNull(shared.get("page/elsewhere"));
+        }
+    }
+
+    @Test
+    public void servesRestoredPagesWhileRevalidating() throws Exception {
+        Path file = Files.createTempDirectory("warm-cache").resolve("warm-cache.bin");
+        client.enableCache(CacheSettings.create().positiveTtl(Duration.ofMillis(1)));
+        client.page("Iron");
+        assertEquals(1, client.saveSnapshot(file, 10));
+        Thread.sleep(5);
+
+        WikiClient restarted = new WikiClient(server.getBaseUrl());
+        restarted.enableCache(CacheSettings.create(), SnapshotResponseStore.open(file, Duration.ofHours(1)));
+        server.latency(Duration.ofMillis(500), Duration.ZERO);
+
+        long start = System.nanoTime();
+        assertEquals("Iron", restarted.page("Iron").getKey());
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(400).toNanos());
+
+        // Joins the revalidation still in flight.
+        assertEquals("Iron", restarted.pageAsync("Iron").join().getKey());
+        assertEquals(1, server.getNotModifiedCount());
+    }
+
+    @Test
+    public void streamsHtmlWithEachEncoding() throws IOException {
+        String html;
+        try (InputStream fixture = WikiClientOfflineTests.class.getResourceAsStream("/fixtures/page_iron.html")) {
+            html = new String(fixture.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        for (String encoding : Arrays.asList("gzip", "deflate", null)) {
+            server.encoding(encoding);
+            try (WikiClient.HtmlReader reader = client.htmlStream("Iron", 1 << 20).join()) {
+                assertEquals(html, readAll(reader));
+                assertFalse(reader.isTruncated());
+            }
+        }
+    }
+
+    @Test
+    public void cutsStreamedHtmlOffAfterMaxBytes() throws IOException {
+        String html = "<p>" + "a".repeat(100_000) + "</p>";
+        server.html("Long Page", html);
+
+        try (WikiClient.HtmlReader reader = client.htmlStream("Long_Page", 1000).join()) {
+            assertEquals(html.substring(0, 1000), readAll(reader));
+            assertTrue(reader.isTruncated());
+        }
+        try (WikiClient.HtmlReader reader = client.htmlStream("Long_Page", html.length()).join()) {
+            assertEquals(html, readAll(reader));
+            assertFalse(reader.isTruncated());
+        }
+    }
+
+    @Test
+    public void cancelsStreamedHtmlClosedEarly() throws IOException, RequestException {
+        server.encoding(null).html("Long Page", "a".repeat(8 << 20));
+
+        try (WikiClient.HtmlReader reader = client.htmlStream("Long_Page", Long.MAX_VALUE).join()) {
+            assertEquals('a', reader.read());
+        }
+
+        // The connection isn't stuck on the rest of the page.
+        assertEquals("Iron", client.page("Iron").getKey());
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringWriter out = new StringWriter();
+        reader.transferTo(out);
+        return out.toString();
+    }
+}
@@ -5,6 +5,9 @@ import org.hytalewiki.net.response.SearchResult;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class WikiClientTests {
@@ -41,6 +44,37 @@ public class WikiClientTests {
                         .toURI().toString());
     }
 
+    @Test
+    public void collapsesEquivalentRequestKeys() {
+        assertEquals(client.buildRestPath("/page/Iron Shovel").toKey(), client.buildRestPath("/page/Iron_Shovel").toKey());
+
+        assertEquals(client.buildRestPath("/search").param("q", "Iron").param("limit", "10").toKey(),
+                client.buildRestPath("/search").param("limit", "10").param("q", "Iron").toKey());
+    }
+
+    @Test
+    public void coalescesConcurrentRequests() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<String> response = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+        CompletableFuture<String> second = singleFlight.execute("key", () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+
+        response.complete("Iron");
+
+        assertEquals("Iron", first.join());
+        assertEquals("Iron", second.join());
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.size());
+    }
+
     @Test
     public void searchesForPages() {
         SearchResult response = assertDoesNotThrow(() -> {
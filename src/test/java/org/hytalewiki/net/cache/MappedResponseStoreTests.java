@@ -0,0 +1,134 @@
+package org.hytalewiki.net.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedResponseStoreTests {
+
+    private static final int SIZE = 1 << 20;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private Path file;
+
+    private final List<MappedResponseStore> opened = new ArrayList<>();
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        this.file = Files.createTempDirectory("response-store").resolve("cache.bin");
+    }
+
+    @AfterEach
+    public void afterEach() {
+        opened.forEach(MappedResponseStore::close);
+    }
+
+    private MappedResponseStore open(int size, int slots) throws IOException {
+        MappedResponseStore store = MappedResponseStore.open(file, size, slots, clock::get);
+        opened.add(store);
+        return store;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ResponseStore.Stored stored) {
+        return stored == null ? null : new String(stored.value(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void storesUntilExpiry() throws IOException {
+        MappedResponseStore store = open(SIZE, 1024);
+
+        store.put("page/Iron", bytes("iron"), clock.get() + 1000);
+        assertEquals("iron", string(store.get("page/Iron")));
+        assertNull(store.get("page/Copper"));
+
+        store.put("page/Iron", bytes("iron, edited"), clock.get() + 1000);
+        assertEquals("iron, edited", string(store.get("page/Iron")));
+
+        clock.addAndGet(1000);
+        assertNull(store.get("page/Iron"));
+    }
+
+    @Test
+    public void sharesBetweenMappings() throws IOException {
+        MappedResponseStore first = open(SIZE, 1024);
+        MappedResponseStore second = open(SIZE * 4, 4096);
+
+        // The second keeps the layout the first created.
+        assertEquals(first.getCapacity(), second.getCapacity());
+
+        first.put("page/Iron", bytes("iron"), clock.get() + 1000);
+        assertEquals("iron", string(second.get("page/Iron")));
+
+        second.invalidate("page/Iron");
+        assertNull(first.get("page/Iron"));
+
+        second.put("page/Copper", bytes("copper"), clock.get() + 1000);
+        first.invalidateAll();
+        assertNull(second.get("page/Copper"));
+        assertEquals(0, second.getUsedBytes());
+    }
+
+    @Test
+    public void resetsWhenFull() throws IOException {
+        MappedResponseStore store = open(64 * 1024, 64);
+        byte[] value = new byte[1000];
+
+        for (int i = 0; i < 200; i++) {
+            store.put("page/" + i, value, clock.get() + 1000);
+        }
+
+        assertTrue(store.getResetCount() > 0);
+        assertTrue(store.getUsedBytes() <= store.getCapacity());
+        store.put("page/last", bytes("last"), clock.get() + 1000);
+        assertEquals("last", string(store.get("page/last")));
+    }
+
+    @Test
+    public void readersOnlySeeWholeRecords() throws Exception {
+        MappedResponseStore writer = open(256 * 1024, 256);
+        MappedResponseStore reader = open(256 * 1024, 256);
+        AtomicInteger mismatches = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            MappedResponseStore store = t % 2 == 0 ? writer : reader;
+            threads.add(Thread.ofPlatform().start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    String key = "page/" + random.nextInt(500);
+                    if (random.nextInt(4) == 0) {
+                        // Values repeat the key, so a torn or misplaced record would show.
+                        store.put(key, bytes((key + ";").repeat(1 + random.nextInt(40))), clock.get() + 1000);
+                    } else {
+                        String value = string(store.get(key));
+                        if (value != null && !value.equals((key + ";").repeat(value.length() / (key.length() + 1)))) {
+                            mismatches.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, mismatches.get());
+    }
+}
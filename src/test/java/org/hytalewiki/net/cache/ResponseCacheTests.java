@@ -0,0 +1,150 @@
+package org.hytalewiki.net.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private ResponseCache<String> create(CacheSettings settings) {
+        return new ResponseCache<>(settings, String::isEmpty, String::length, clock::get);
+    }
+
+    @Test
+    public void expiresNegativeEntriesSooner() {
+        ResponseCache<String> cache = create(CacheSettings.create()
+                .positiveTtl(Duration.ofSeconds(10))
+                .negativeTtl(Duration.ofSeconds(1)));
+
+        cache.put("found", "Iron");
+        cache.put("missing", "");
+        cache.put("null", null);
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+
+        assertNotNull(cache.get("found"));
+        assertNull(cache.get("missing"));
+        assertNull(cache.get("null"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBySize() {
+        ResponseCache<String> cache = create(CacheSettings.create().maximumSize(2));
+
+        cache.put("a", "a");
+        cache.put("b", "b");
+        cache.get("a");
+        cache.put("c", "c");
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsByWeight() {
+        ResponseCache<String> cache = create(CacheSettings.create().maximumWeight(10));
+
+        cache.put("a", "aaaaaa");
+        cache.put("b", "bbbbbb");
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertEquals(6, cache.weight());
+    }
+
+    @Test
+    public void refreshesRevalidatedEntries() {
+        ResponseCache<String> cache = create(CacheSettings.create().positiveTtl(Duration.ofSeconds(10)));
+
+        cache.put("page", "Iron", new Validators("W/\"18734/7e3c\"", null, 0));
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertNull(cache.get("page"));
+        ResponseCache.Entry<String> stale = cache.getStale("page");
+        assertEquals(18734, Validators.from(HttpHeaders.of(
+                Map.of("ETag", List.of(stale.getValidators().getEtag())), (name, value) -> true)).getRevisionId());
+
+        cache.refresh("page", stale, Validators.NONE);
+        assertEquals("Iron", cache.get("page").getValue());
+        assertEquals("W/\"18734/7e3c\"", cache.get("page").getValidators().getEtag());
+        assertEquals(1, cache.getRevalidationCount());
+    }
+
+    @Test
+    public void keepsValidatorsSentWithRevalidations() {
+        ResponseCache<String> cache = create(CacheSettings.create().positiveTtl(Duration.ofSeconds(10)));
+
+        cache.put("page", "Iron", new Validators("W/\"18734/7e3c\"", "Tue, 20 Oct 2026 10:00:00 GMT", 18734));
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        cache.refresh("page", cache.getStale("page"), new Validators("W/\"18734/9a1f\"", null, 18734));
+        Validators validators = cache.get("page").getValidators();
+        assertEquals("W/\"18734/9a1f\"", validators.getEtag());
+        assertEquals("Tue, 20 Oct 2026 10:00:00 GMT", validators.getLastModified());
+        assertEquals(18734, validators.getRevisionId());
+    }
+
+    @Test
+    public void sharesEntriesThroughTheStore() {
+        Map<String, ResponseStore.Stored> stored = new ConcurrentHashMap<>();
+        ResponseStore store = new ResponseStore() {
+            public Stored get(String key) {
+                return stored.get(key);
+            }
+
+            public void put(String key, byte[] value, long expiresAtMillis) {
+                stored.put(key, new Stored(value, expiresAtMillis));
+            }
+
+            public void invalidate(String key) {
+                stored.remove(key);
+            }
+
+            public void invalidateAll() {
+                stored.clear();
+            }
+
+            public void close() {
+            }
+        };
+        ResponseCache.Serializer<String> serializer = new ResponseCache.Serializer<>() {
+            public byte[] serialize(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            public String deserialize(byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+
+        CacheSettings settings = CacheSettings.create().positiveTtl(Duration.ofMinutes(10));
+        ResponseCache<String> first = new ResponseCache<>(settings, String::isEmpty, String::length, clock::get, store, serializer);
+        ResponseCache<String> second = new ResponseCache<>(settings, String::isEmpty, String::length, clock::get, store, serializer);
+
+        first.put("page", "Iron", new Validators("W/\"18734/7e3c\"", null, 18734));
+        ResponseCache.Entry<String> entry = second.get("page");
+        assertEquals("Iron", entry.getValue());
+        assertEquals(18734, entry.getValidators().getRevisionId());
+        assertEquals(1, second.getStoreHitCount());
+
+        second.invalidate("page");
+        first.invalidate("page");
+        assertNull(second.get("page"));
+        assertTrue(stored.isEmpty());
+    }
+}
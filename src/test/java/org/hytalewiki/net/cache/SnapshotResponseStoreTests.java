@@ -0,0 +1,133 @@
+package org.hytalewiki.net.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotResponseStoreTests {
+
+    private static final ResponseCache.Serializer<String> SERIALIZER = new ResponseCache.Serializer<>() {
+        public byte[] serialize(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        public String deserialize(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    private Path file;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        this.file = Files.createTempDirectory("snapshot-store").resolve("warm-cache.bin");
+    }
+
+    private SnapshotResponseStore open() {
+        return SnapshotResponseStore.open(file, Duration.ofHours(1), clock::get);
+    }
+
+    private static ResponseCache<String> create(ResponseStore store) {
+        return new ResponseCache<>(CacheSettings.create().positiveTtl(Duration.ofMinutes(10)),
+                String::isEmpty, String::length, store, SERIALIZER);
+    }
+
+    @Test
+    public void restoresTheHottestEntries() throws IOException {
+        ResponseCache<String> before = create(null);
+        before.put("page/Iron", "iron", new Validators("W/\"18734/7e3c\"", null, 18734));
+        before.put("page/Copper", "copper");
+        before.put("page/Tin", "tin");
+        before.get("page/Iron");
+
+        List<ResponseCache.Exported> hottest = before.exportHottest(2);
+        assertEquals(List.of("page/Iron", "page/Tin"), hottest.stream().map(ResponseCache.Exported::key).toList());
+        assertEquals(2, SnapshotResponseStore.write(file, hottest));
+
+        ResponseCache<String> after = create(open());
+        ResponseCache.Entry<String> entry = after.get("page/Iron");
+        assertEquals("iron", entry.getValue());
+        assertEquals(18734, entry.getValidators().getRevisionId());
+        assertNull(after.get("page/Copper"));
+        assertEquals(1, after.getStoreHitCount());
+    }
+
+    @Test
+    public void handsOutExpiredEntriesOnce() throws IOException {
+        SnapshotResponseStore.write(file, List.of(
+                new ResponseCache.Exported("page/Iron", encoded("iron"), clock.get() - 1000),
+                new ResponseCache.Exported("page/Tin", encoded("tin"), clock.get() - Duration.ofHours(2).toMillis())));
+
+        ResponseCache<String> cache = create(open());
+        assertNull(cache.get("page/Iron"));
+        assertEquals("iron", cache.takeRestored("page/Iron").getValue());
+        assertNull(cache.takeRestored("page/Iron"));
+
+        // Past maxStale.
+        assertNull(cache.get("page/Tin"));
+        assertNull(cache.takeRestored("page/Tin"));
+    }
+
+    @Test
+    public void skipsSupersededEntries() throws IOException {
+        SnapshotResponseStore.write(file, List.of(
+                new ResponseCache.Exported("page/Iron", encoded("iron"), clock.get() + 1000),
+                new ResponseCache.Exported("page/Tin", encoded("tin"), clock.get() + 1000)));
+        SnapshotResponseStore store = open();
+        assertEquals(2, store.size());
+
+        store.put("page/Iron", encoded("iron, edited"), clock.get() + 1000);
+        assertNull(store.get("page/Iron"));
+        assertNotNull(store.get("page/Tin"));
+
+        // Keys the snapshot doesn't have aren't kept track of.
+        store.put("search/iron/10", encoded("results"), clock.get() + 1000);
+        store.invalidate("page/Copper");
+        assertEquals(1, store.getSupersededCount());
+
+        store.invalidateAll();
+        assertNull(store.get("page/Tin"));
+    }
+
+    @Test
+    public void replacesTheSnapshotItIsReadingFrom() throws IOException {
+        SnapshotResponseStore.write(file, List.of(new ResponseCache.Exported("page/Iron", encoded("iron"), clock.get() + 1000)));
+        SnapshotResponseStore store = open();
+        assertNotNull(store.get("page/Iron"));
+
+        // As on shutdown, while the store is still open.
+        SnapshotResponseStore.write(file, List.of(new ResponseCache.Exported("page/Tin", encoded("tin"), clock.get() + 1000)));
+        assertNotNull(store.get("page/Iron"));
+        store.close();
+
+        assertNull(open().get("page/Iron"));
+        assertNotNull(open().get("page/Tin"));
+    }
+
+    @Test
+    public void hasNothingWithoutASnapshot() throws IOException {
+        assertNull(open().get("page/Iron"));
+
+        Files.writeString(file, "not a snapshot");
+        assertNull(open().get("page/Iron"));
+        assertEquals(0, open().size());
+    }
+
+    // As ResponseCache stores it, without validators.
+    private static byte[] encoded(String value) {
+        ResponseCache<String> cache = create(null);
+        cache.put("key", value);
+        return cache.exportHottest(1).getFirst().value();
+    }
+}
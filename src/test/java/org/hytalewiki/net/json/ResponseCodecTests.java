@@ -0,0 +1,108 @@
+package org.hytalewiki.net.json;
+
+import org.hytalewiki.net.response.PageObject;
+import org.hytalewiki.net.response.PageQueryResult;
+import org.hytalewiki.net.response.RecentChanges;
+import org.hytalewiki.net.response.SearchEntry;
+import org.hytalewiki.net.response.SearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCodecTests {
+
+    private static Reader fixture(String name) {
+        InputStream stream = ResponseCodecTests.class.getResourceAsStream("/fixtures/" + name);
+        assertNotNull(stream, "Missing fixture " + name);
+        return new InputStreamReader(stream, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void decodesFullPages() {
+        PageObject page = ResponseCodec.FULL.decode(fixture("page_iron.json"), PageObject.class);
+
+        assertEquals("Iron", page.getKey());
+        assertEquals(18734, page.getLatest().getId());
+        assertEquals("wikitext", page.getContentModel());
+        assertNotNull(page.getSource());
+    }
+
+    @Test
+    public void skipsUnwantedFields() {
+        PageObject page = ResponseCodec.COMPACT.decode(fixture("page_iron.json"), PageObject.class);
+
+        assertEquals("Iron", page.getTitle());
+        assertNotNull(page.getLatest());
+        assertNull(page.getSource());
+
+        SearchResult result = ResponseCodec.KEYS.decode(fixture("search_iron.json"), SearchResult.class);
+        SearchEntry entry = result.getPages().get(2);
+
+        assertEquals(10, result.getPages().size());
+        assertEquals("Iron_Shovel", entry.getKey());
+        assertEquals("Iron Shovel", entry.getTitle());
+        assertEquals(0, entry.getId());
+        assertNull(entry.getExcerpt());
+        assertNull(entry.getThumbnail());
+    }
+
+    @Test
+    public void resolvesQueriedTitles() {
+        PageQueryResult result = ResponseCodec.COMPACT.decode(fixture("query_iron.json"), PageQueryResult.class);
+
+        assertEquals("Iron_Sword", result.resolve("Iron_Sword").getKey());
+        assertEquals(1033, result.resolve("Iron Ingot").getId());
+        assertEquals(18734, result.resolve("Iron").getLatest().getId());
+        // Of the revision, not when the page was last touched.
+        assertEquals("2025-11-02T10:31:47Z", result.resolve("Iron").getLatest().getTimestamp());
+        assertNull(result.resolve("Nonexistent Page").getKey());
+        assertNull(result.getError());
+    }
+
+    @Test
+    public void decodesRecentChanges() {
+        RecentChanges result = ResponseCodec.COMPACT.decode(fixture("recentchanges.json"), RecentChanges.class);
+
+        assertEquals("20261016093012|4822", result.getContinueToken());
+        assertEquals(4, result.getChanges().size());
+        assertEquals(new RecentChanges.Change(4819, "edit", null, "Iron Ingot", "2026-10-16T09:12:44Z", null),
+                result.getChanges().getFirst());
+        assertEquals("Iron Longsword", result.getChanges().get(2).target());
+        assertEquals("move", result.getChanges().get(2).logType());
+        assertNull(result.getChanges().get(3).target());
+    }
+
+    @Test
+    public void decodesMissingPagesWithoutKey() {
+        PageObject page = ResponseCodec.COMPACT.decode(fixture("page_missing.json"), PageObject.class);
+
+        assertNotNull(page);
+        assertNull(page.getKey());
+    }
+
+    @Test
+    public void roundTripsSearchResults() {
+        SearchResult result = ResponseCodec.FULL.decode(fixture("search_iron.json"), SearchResult.class);
+        String encoded = ResponseCodec.FULL.encode(result, SearchResult.class);
+        SearchResult decoded = ResponseCodec.FULL.decode(new StringReader(encoded), SearchResult.class);
+
+        assertEquals(result.getPages().size(), decoded.getPages().size());
+        assertEquals("image/png", decoded.getPages().get(0).getThumbnail().getMimeType());
+    }
+
+    @Test
+    public void roundTripsQueriedPages() {
+        PageQueryResult result = ResponseCodec.FULL.decode(fixture("query_iron.json"), PageQueryResult.class);
+        String encoded = ResponseCodec.FULL.encode(result, PageQueryResult.class);
+        PageQueryResult decoded = ResponseCodec.FULL.decode(new StringReader(encoded), PageQueryResult.class);
+
+        assertEquals(17702, decoded.resolve("Iron Sword").getLatest().getId());
+        assertEquals("2025-10-28T16:05:12Z", decoded.resolve("Iron Sword").getLatest().getTimestamp());
+    }
+}
@@ -0,0 +1,53 @@
+package org.hytalewiki.net.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FuzzyTitleIndexTests {
+
+    private final FuzzyTitleIndex index = FuzzyTitleIndex.of(List.of(
+            "Iron Shovel", "Iron Sword", "Iron", "Copper Ore", "Crude Shovel", "Orb"), 2);
+
+    @Test
+    public void resolvesNearMisses() {
+        assertEquals("Iron Shovel", index.resolve("Iorn Shovel"));
+        assertEquals("Iron Shovel", index.resolve("iron_shovle"));
+        assertEquals("Iron Sword", index.resolve("Iron Swrd"));
+        assertEquals("Copper Ore", index.resolve("Coper Ore"));
+        assertEquals("Crude Shovel", index.resolve("Crud Shovl"));
+    }
+
+    @Test
+    public void resolvesExactMatchesRegardlessOfCase() {
+        assertEquals("Iron Shovel", index.resolve("IRON_SHOVEL"));
+        assertEquals("Orb", index.resolve("orb"));
+        assertEquals("Iron", index.resolve(" iron "));
+    }
+
+    @Test
+    public void allowsFewerEditsInShortText() {
+        assertEquals("Iron", index.resolve("Iorn"));
+        assertNull(index.resolve("Ore"));
+        assertNull(index.resolve("Irn"));
+    }
+
+    @Test
+    public void resolvesNothingTooFarOff() {
+        assertNull(index.resolve("Steel Pickaxe"));
+        assertNull(index.resolve("Iorn Shvoel Head"));
+        assertNull(index.resolve(""));
+        assertNull(FuzzyTitleIndex.EMPTY.resolve("Iron"));
+        assertNull(FuzzyTitleIndex.of(List.of("Iron Shovel"), 0).resolve("Iorn Shovel"));
+    }
+
+    @Test
+    public void measuresSwapsAsOneEdit() {
+        assertEquals(1, FuzzyTitleIndex.distance("iorn", "iron", 2));
+        assertEquals(2, FuzzyTitleIndex.distance("iron", "irno sword", 1));
+        assertEquals(2, FuzzyTitleIndex.distance("kitten", "sitting", 1));
+        assertEquals(3, FuzzyTitleIndex.distance("kitten", "sitting", 5));
+    }
+}
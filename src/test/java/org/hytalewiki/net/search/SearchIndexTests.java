@@ -0,0 +1,122 @@
+package org.hytalewiki.net.search;
+
+import org.hytalewiki.net.response.SearchEntry;
+import org.hytalewiki.net.response.SearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexTests {
+
+    private static SearchIndex sample() {
+        return new SearchIndex.Builder()
+                .add(1, "Iron_Ore", "Iron Ore", "Iron ore is found in caves and smelted into iron bars.")
+                .add(2, "Iron_Sword", "Iron Sword", "A sword crafted from iron bars.")
+                .add(3, "Iron", "Iron", "Iron is a metal. Iron bars are made from iron ore.")
+                .add(4, "Copper_Ore", "Copper Ore", "Copper ore is common near the surface.")
+                .add(5, "Kweebec", "Kweebec", "Kweebecs live in the forests of Zone 1.")
+                .build();
+    }
+
+    private static List<String> titles(SearchResult result) {
+        return result.getPages().stream().map(SearchEntry::getTitle).toList();
+    }
+
+    @Test
+    public void ranksExactTitleFirst() {
+        SearchResult result = sample().search("iron", 10);
+
+        assertEquals("Iron", result.getPages().get(0).getTitle());
+        assertEquals("Iron", result.getPages().get(0).getKey());
+        assertEquals(3, result.getPages().get(0).getId());
+        assertEquals(3, result.getPages().size());
+        assertFalse(titles(result).contains("Copper Ore"));
+    }
+
+    @Test
+    public void ranksByAllTerms() {
+        SearchIndex index = sample();
+
+        assertEquals("Copper Ore", index.search("copper ore", 10).getPages().get(0).getTitle());
+        assertEquals("Iron Ore", index.search("ORE iron", 10).getPages().get(0).getTitle());
+        assertEquals(List.of("Kweebec"), titles(index.search("forests", 10)));
+    }
+
+    @Test
+    public void limitsAndMisses() {
+        SearchIndex index = sample();
+
+        assertEquals(2, index.search("ore", 2).getPages().size());
+        assertEquals(1, index.search("iron", 1).getPages().size());
+        assertTrue(index.search("diamond", 10).getPages().isEmpty());
+        assertTrue(index.search("  ", 10).getPages().isEmpty());
+    }
+
+    @Test
+    public void matchesWhatSearchFinds() {
+        SearchIndex index = sample();
+
+        for (String query : List.of("iron", "ORE copper", "diamond ore", "forests", "diamond", "  ", "")) {
+            assertEquals(!index.search(query, 10).getPages().isEmpty(), index.matches(query));
+        }
+        assertFalse(new SearchIndex.Builder().build().matches("iron"));
+    }
+
+    @Test
+    public void skipsDuplicateKeys() {
+        SearchIndex index = new SearchIndex.Builder()
+                .add(1, "Iron", "Iron", "metal")
+                .add(2, "Iron", "Iron", "metal")
+                .build();
+
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void roundTripsThroughDisk() throws IOException {
+        Path directory = Files.createTempDirectory("search-index");
+        Path file = directory.resolve("search-index.bin");
+
+        SearchIndex index = sample();
+        index.write(file);
+        SearchIndex read = SearchIndex.read(file);
+
+        assertEquals(index.size(), read.size());
+        assertEquals(index.getTermCount(), read.getTermCount());
+        for (String query : List.of("iron", "copper ore", "zone 1", "bars")) {
+            assertEquals(titles(index.search(query, 10)), titles(read.search(query, 10)));
+        }
+    }
+
+    @Test
+    public void buildsFromSnapshotWhenNewer() throws IOException {
+        Path directory = Files.createTempDirectory("search-index");
+        Path snapshot = directory.resolve("search-snapshot.jsonl");
+        Path file = directory.resolve("search-index.bin");
+
+        assertNull(SearchIndex.open(snapshot, file));
+
+        Files.writeString(snapshot, """
+                {"id": 1, "key": "Iron_Ore", "title": "Iron Ore", "text": "Found in caves."}
+
+                {"id": 2, "title": "Copper Ore", "text": "Found near the surface."}
+                """);
+        SearchIndex index = SearchIndex.open(snapshot, file);
+        assertEquals(2, index.size());
+        assertEquals("Copper_Ore", index.search("copper", 10).getPages().get(0).getKey());
+        assertTrue(Files.exists(file));
+
+        Files.writeString(snapshot, """
+                {"id": 3, "title": "Kweebec"}
+                """);
+        Files.setLastModifiedTime(snapshot, FileTime.from(Instant.now().plusSeconds(60)));
+        assertEquals(List.of("Kweebec"), titles(SearchIndex.open(snapshot, file).search("kweebec", 10)));
+    }
+}
@@ -0,0 +1,37 @@
+package org.hytalewiki.net.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TitleIndexTests {
+
+    private final TitleIndex index = TitleIndex.of(List.of(
+            "Iron Ore", "Iron", "Ironwood Log", "Copper Ore", "iron_ore", "Crude Sword"));
+
+    @Test
+    public void completesPrefixesOfTitlesFirst() {
+        assertEquals(List.of("Iron", "Iron Ore", "Ironwood Log"), index.complete("iron", 10));
+        assertEquals(List.of("Iron", "Iron Ore"), index.complete("IRON", 2));
+        assertEquals(List.of("Iron Ore"), index.complete("Iron_O", 10));
+        assertEquals(List.of("Iron Ore"), index.complete("iron ", 10));
+    }
+
+    @Test
+    public void completesLaterWords() {
+        assertEquals(List.of("Copper Ore", "Iron Ore"), index.complete("ore", 10));
+        assertEquals(List.of("Crude Sword"), index.complete("cr", 10));
+        assertEquals(List.of("Crude Sword"), index.complete("sw", 10));
+        assertEquals(List.of("Copper Ore"), index.complete("ore", 1));
+    }
+
+    @Test
+    public void keepsTitlesOnce() {
+        assertEquals(5, index.size());
+        assertTrue(index.complete("", 10).isEmpty());
+        assertTrue(index.complete("gold", 10).isEmpty());
+        assertTrue(TitleIndex.EMPTY.complete("iron", 10).isEmpty());
+    }
+}